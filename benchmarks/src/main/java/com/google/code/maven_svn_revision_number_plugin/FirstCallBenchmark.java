@@ -0,0 +1,170 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+
+/**
+ * Measures the latency and the number of loaded classes of the first local-only inspection in a fresh JVM.
+ * <p/>
+ * JMH runs the setup of a benchmark in the measured JVM, and generating a working copy loads most of the svnkit
+ * classes, including the {@code file://} repository protocol, so the first call is measured outside of JMH. The working
+ * copy is generated once, then every run starts a new JVM with the same class path that inspects the working copy and
+ * reports the time spent in the first {@code processEntry} call and the number of classes loaded by that call. The
+ * class loading of the probe JVM is traced to check whether that call loaded any repository protocol. The benchmark is run with
+ * {@code java -cp target/benchmarks.jar com.google.code.maven_svn_revision_number_plugin.FirstCallBenchmark [runs] [format] [fileCount]}.
+ */
+public final class FirstCallBenchmark {
+
+    private static final String PROBE = "--probe";
+
+    private static final String PROBE_START = "probe started";
+
+    private static final String PROBE_RESULT = "probe result: ";
+
+    private static final List<String> REPOSITORY_FACTORIES = Arrays.asList(
+            "org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory",
+            "org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl",
+            "org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory" );
+
+
+    public static void main( String[] args ) throws Exception {
+        if ( args.length == 2 && PROBE.equals( args[ 0 ] ) ) {
+            probe( new File( args[ 1 ] ) );
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 10;
+        SvnWcGeneration generation = args.length > 1 && "wc6".equals( args[ 1 ] ) ? SvnWcGeneration.V16 : SvnWcGeneration.V17;
+        int fileCount = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : 1000;
+
+        File directory = File.createTempFile( "svn-revision-number-benchmark", "" );
+        if ( !directory.delete() || !directory.mkdirs() ) {
+            throw new IllegalStateException( "failed to create the temp directory " + directory );
+        }
+        try {
+            File workingCopy = new WorkingCopyGenerator( generation, fileCount, 3, 10, 5, true ).generate( directory );
+            long[] latencies = new long[ runs ];
+            long[] classes = new long[ runs ];
+            boolean protocolsLoaded = false;
+            for ( int i = 0; i < runs; i++ ) {
+                String[] result = runProbe( workingCopy ).split( " " );
+                latencies[ i ] = Long.parseLong( result[ 0 ] );
+                classes[ i ] = Long.parseLong( result[ 1 ] );
+                protocolsLoaded |= Boolean.parseBoolean( result[ 2 ] );
+            }
+            System.out.println( String.format( "format = %s, files = %s, runs = %s", generation, fileCount, runs ) );
+            System.out.println( "first call latency, ms: " + summarize( latencies ) );
+            System.out.println( "loaded classes:         " + summarize( classes ) );
+            System.out.println( "repository protocols loaded: " + protocolsLoaded );
+        } finally {
+            SVNFileUtil.deleteAll( directory, true );
+        }
+    }
+
+    private static String runProbe( File workingCopy ) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add( new File( new File( System.getProperty( "java.home" ), "bin" ), "java" ).getPath() );
+        command.add( "-verbose:class" );
+        command.add( "-cp" );
+        command.add( System.getProperty( "java.class.path" ) );
+        command.add( FirstCallBenchmark.class.getName() );
+        command.add( PROBE );
+        command.add( workingCopy.getPath() );
+        Process process = new ProcessBuilder( command ).redirectErrorStream( true ).start();
+        StringBuilder output = new StringBuilder();
+        String result = null;
+        boolean started = false;
+        boolean protocolsLoaded = false;
+        BufferedReader reader = new BufferedReader( new InputStreamReader( process.getInputStream(), "UTF-8" ) );
+        try {
+            String line;
+            while ( ( line = reader.readLine() ) != null ) {
+                output.append( line ).append( '\n' );
+                if ( line.startsWith( PROBE_START ) ) {
+                    started = true;
+                } else if ( line.startsWith( PROBE_RESULT ) ) {
+                    result = line.substring( PROBE_RESULT.length() );
+                    started = false;
+                } else if ( started ) {
+                    for ( String className : REPOSITORY_FACTORIES ) {
+                        protocolsLoaded |= line.contains( className );
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if ( process.waitFor() != 0 || result == null ) {
+            throw new IllegalStateException( "the probe failed:\n" + output );
+        }
+        return result + " " + protocolsLoaded;
+    }
+
+    private static void probe( File workingCopy ) throws Exception {
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        long loadedClasses = classLoading.getTotalLoadedClassCount();
+        System.out.println( PROBE_START );
+        long startTime = System.nanoTime();
+
+        RevisionMojo mojo = new RevisionMojo();
+        mojo.setLog( new QuietLog() );
+        SvnOperationFactory operationFactory = new SvnOperationFactory();
+        try {
+            mojo.processEntry( operationFactory, new Entry( workingCopy, "benchmark" ) );
+        } finally {
+            operationFactory.dispose();
+        }
+
+        long latency = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startTime );
+        loadedClasses = classLoading.getTotalLoadedClassCount() - loadedClasses;
+        System.out.println( PROBE_RESULT + latency + " " + loadedClasses );
+    }
+
+    private static String summarize( long[] values ) {
+        long[] sorted = values.clone();
+        Arrays.sort( sorted );
+        long sum = 0L;
+        for ( long value : sorted ) {
+            sum += value;
+        }
+        return String.format( "min = %s, median = %s, mean = %s, max = %s", sorted[ 0 ], sorted[ sorted.length / 2 ], sum / sorted.length, sorted[ sorted.length - 1 ] );
+    }
+
+}
@@ -0,0 +1,86 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+/** The log that discards all messages, so that the benchmarks measure the work and not the console output. */
+final class QuietLog implements Log {
+
+    public boolean isDebugEnabled() {
+        return false;
+    }
+
+    public void debug( CharSequence content ) {
+    }
+
+    public void debug( CharSequence content, Throwable error ) {
+    }
+
+    public void debug( Throwable error ) {
+    }
+
+    public boolean isInfoEnabled() {
+        return false;
+    }
+
+    public void info( CharSequence content ) {
+    }
+
+    public void info( CharSequence content, Throwable error ) {
+    }
+
+    public void info( Throwable error ) {
+    }
+
+    public boolean isWarnEnabled() {
+        return false;
+    }
+
+    public void warn( CharSequence content ) {
+    }
+
+    public void warn( CharSequence content, Throwable error ) {
+    }
+
+    public void warn( Throwable error ) {
+    }
+
+    public boolean isErrorEnabled() {
+        return false;
+    }
+
+    public void error( CharSequence content ) {
+    }
+
+    public void error( CharSequence content, Throwable error ) {
+    }
+
+    public void error( Throwable error ) {
+    }
+
+}
@@ -0,0 +1,181 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnGetStatus;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/**
+ * Measures the status collection on a synthetic working copy.
+ * <p/>
+ * The {@code receive} benchmark replays the statuses of all nodes into a new status handler, the
+ * {@code createStatusString} benchmark formats the status of the whole working copy, and the {@code processEntry}
+ * benchmark inspects the whole working copy the same way the goal does. The shape of the working copy is controlled by
+ * the parameters, for example {@code java -jar target/benchmarks.jar -p fileCount=10000 -p format=wc7}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+@Warmup( iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS )
+@Measurement( iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS )
+public class StatusCollectionBenchmark {
+
+    /** The working copy format, either {@code wc6} or {@code wc7}. */
+    @Param( { "wc6", "wc7" } )
+    public String format;
+
+    /** The number of versioned files. */
+    @Param( "1000" )
+    public int fileCount;
+
+    /** The depth of the directory tree. */
+    @Param( "3" )
+    public int depth;
+
+    /** The percentage of the versioned files that are locally modified. */
+    @Param( "10" )
+    public int modifiedPercent;
+
+    /** The number of unversioned files as a percentage of the versioned files. */
+    @Param( "5" )
+    public int unversionedPercent;
+
+    /** Whether the working copy contains mixed revisions. */
+    @Param( "true" )
+    public boolean mixedRevisions;
+
+    private File directory;
+
+    private Entry entry;
+
+    private RevisionMojo mojo;
+
+    private SvnOperationFactory operationFactory;
+
+    private final List<SvnTarget> targets = new ArrayList<SvnTarget>();
+
+    private final List<SvnStatus> statuses = new ArrayList<SvnStatus>();
+
+    private StatusHandler filledStatusHandler;
+
+
+    @Setup
+    public void setUp() throws Exception {
+        SvnWcGeneration generation;
+        if ( "wc6".equals( format ) ) {
+            generation = SvnWcGeneration.V16;
+        } else if ( "wc7".equals( format ) ) {
+            generation = SvnWcGeneration.V17;
+        } else {
+            throw new IllegalArgumentException( "unsupported format: " + format );
+        }
+        directory = File.createTempFile( "svn-revision-number-benchmark", "" );
+        if ( !directory.delete() || !directory.mkdirs() ) {
+            throw new IllegalStateException( "failed to create the temp directory " + directory );
+        }
+        File workingCopy = new WorkingCopyGenerator( generation, fileCount, depth, modifiedPercent, unversionedPercent, mixedRevisions ).generate( directory );
+
+        entry = new Entry( workingCopy, "benchmark" );
+        mojo = new RevisionMojo();
+        mojo.setLog( new QuietLog() );
+        operationFactory = new SvnOperationFactory();
+
+        SvnGetStatus statusOperation = operationFactory.createGetStatus();
+        statusOperation.setSingleTarget( SvnTarget.fromFile( workingCopy ) );
+        statusOperation.setDepth( SVNDepth.INFINITY );
+        statusOperation.setRevision( SVNRevision.WORKING );
+        statusOperation.setReportAll( true );
+        statusOperation.setReceiver( new ISvnObjectReceiver<SvnStatus>() {
+            public void receive( SvnTarget target, SvnStatus status ) {
+                targets.add( target );
+                statuses.add( status );
+            }
+        } );
+        statusOperation.run();
+
+        filledStatusHandler = receive();
+    }
+
+    @TearDown
+    public void tearDown() {
+        if ( operationFactory != null ) {
+            operationFactory.dispose();
+        }
+        if ( directory != null ) {
+            SVNFileUtil.deleteAll( directory, true );
+        }
+    }
+
+
+    @Benchmark
+    public StatusHandler receive() throws SVNException {
+        StatusHandler statusHandler = mojo.createStatusHandler( entry );
+        for ( int i = 0; i < statuses.size(); i++ ) {
+            statusHandler.receive( targets.get( i ), statuses.get( i ) );
+        }
+        return statusHandler;
+    }
+
+    @Benchmark
+    public String createStatusString() {
+        return filledStatusHandler.createStatusString( EntryStatusSymbols.DEFAULT );
+    }
+
+    @Benchmark
+    public Map<String, Object> processEntry() throws MojoExecutionException {
+        return mojo.processEntry( operationFactory, entry );
+    }
+
+}
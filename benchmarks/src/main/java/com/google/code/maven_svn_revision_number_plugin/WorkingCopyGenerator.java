@@ -0,0 +1,189 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc2.SvnCheckout;
+import org.tmatesoft.svn.core.wc2.SvnCommit;
+import org.tmatesoft.svn.core.wc2.SvnImport;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/**
+ * Creates synthetic working copies of the {@code trunk} directory of a local {@code file://} repository, the same way
+ * the integration test setup scripts do.
+ * <p/>
+ * The files are distributed evenly over a directory tree where each directory has two subdirectories down to the
+ * configured depth.
+ */
+final class WorkingCopyGenerator {
+
+    private final SvnWcGeneration generation;
+
+    private final int fileCount;
+
+    private final int depth;
+
+    private final int modifiedPercent;
+
+    private final int unversionedPercent;
+
+    private final boolean mixedRevisions;
+
+
+    /**
+     * Creates a new {@code WorkingCopyGenerator} object.
+     *
+     * @param generation the working copy format
+     * @param fileCount the number of versioned files
+     * @param depth the depth of the directory tree
+     * @param modifiedPercent the percentage of the versioned files that are locally modified
+     * @param unversionedPercent the number of unversioned files as a percentage of the versioned files
+     * @param mixedRevisions whether every other file should be committed in a later revision
+     */
+    WorkingCopyGenerator( SvnWcGeneration generation, int fileCount, int depth, int modifiedPercent, int unversionedPercent, boolean mixedRevisions ) {
+        if ( generation == null ) {
+            throw new IllegalArgumentException( "{generation} is null" );
+        }
+        if ( fileCount < 0 ) {
+            throw new IllegalArgumentException( "{fileCount} is negative" );
+        }
+        if ( depth < 0 ) {
+            throw new IllegalArgumentException( "{depth} is negative" );
+        }
+        this.generation = generation;
+        this.fileCount = fileCount;
+        this.depth = depth;
+        this.modifiedPercent = modifiedPercent;
+        this.unversionedPercent = unversionedPercent;
+        this.mixedRevisions = mixedRevisions;
+    }
+
+
+    /**
+     * Creates the repository and the working copy in the specified directory.
+     *
+     * @param directory the directory that will contain the repository and the working copy
+     *
+     * @return the working copy root
+     *
+     * @throws SVNException if a Subversion operation failed
+     * @throws IOException if a file could not be written
+     */
+    File generate( File directory ) throws SVNException, IOException {
+        File repositoryDir = new File( directory, "repo" );
+        File importDir = new File( directory, "import" );
+        File workingCopyDir = new File( directory, "wc" );
+
+        List<String> directories = new ArrayList<String>();
+        collectDirectories( "", depth, directories );
+        List<String> files = new ArrayList<String>( fileCount );
+        for ( int i = 0; i < fileCount; i++ ) {
+            String file = directories.get( i % directories.size() ) + "file" + i + ".txt";
+            write( new File( importDir, file ), "content " + i + "\n", false );
+            files.add( file );
+        }
+        for ( String dir : directories ) {
+            new File( importDir, dir ).mkdirs();
+        }
+
+        FSRepositoryFactory.setup();
+        SVNURL repositoryUrl = SVNRepositoryFactory.createLocalRepository( repositoryDir, null, false, false, false, false, false, false, true );
+        SVNURL trunkUrl = repositoryUrl.appendPath( "trunk", false );
+
+        SvnOperationFactory operationFactory = new SvnOperationFactory();
+        operationFactory.setPrimaryWcGeneration( generation );
+        try {
+            SvnImport importOperation = operationFactory.createImport();
+            importOperation.setSource( importDir );
+            importOperation.setSingleTarget( SvnTarget.fromURL( trunkUrl ) );
+            importOperation.setCommitMessage( "generated content" );
+            importOperation.run();
+
+            SvnCheckout checkout = operationFactory.createCheckout();
+            checkout.setSource( SvnTarget.fromURL( trunkUrl ) );
+            checkout.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) );
+            checkout.run();
+
+            if ( mixedRevisions ) {
+                for ( int i = 0; i < files.size(); i += 2 ) {
+                    write( new File( workingCopyDir, files.get( i ) ), "updated\n", true );
+                }
+                SvnCommit commit = operationFactory.createCommit();
+                commit.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) );
+                commit.setCommitMessage( "mixed revisions" );
+                commit.run();
+            }
+        } finally {
+            operationFactory.dispose();
+        }
+
+        int modifiedCount = fileCount * modifiedPercent / 100;
+        for ( int i = 0; i < modifiedCount; i++ ) {
+            write( new File( workingCopyDir, files.get( i ) ), "modified\n", true );
+        }
+        int unversionedCount = fileCount * unversionedPercent / 100;
+        for ( int i = 0; i < unversionedCount; i++ ) {
+            write( new File( workingCopyDir, directories.get( i % directories.size() ) + "unversioned" + i + ".txt" ), "unversioned\n", false );
+        }
+
+        SVNFileUtil.deleteAll( importDir, true );
+        return workingCopyDir;
+    }
+
+    private static void collectDirectories( String path, int depth, List<String> directories ) {
+        directories.add( path );
+        if ( depth > 0 ) {
+            for ( int i = 0; i < 2; i++ ) {
+                collectDirectories( path + "dir" + i + "/", depth - 1, directories );
+            }
+        }
+    }
+
+    private static void write( File file, String content, boolean append ) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream output = new FileOutputStream( file, append );
+        try {
+            output.write( content.getBytes( "UTF-8" ) );
+        } finally {
+            output.close();
+        }
+    }
+
+}
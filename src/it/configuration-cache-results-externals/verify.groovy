@@ -0,0 +1,24 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties.repository =~ /\/repo$/
+assert properties.path == "main"
+assert properties.revision == "3"
+assert properties.status == ""
+
+println "checking cache usage"
+
+def buildLog = new File( basedir, "build.log" ).getText( "UTF-8" )
+assert !buildLog.contains( "restored from the result cache" )
+assert buildLog.contains( "updating 1 changed items of the cached result" )
+
+return true
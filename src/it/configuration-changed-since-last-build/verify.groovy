@@ -0,0 +1,27 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def buildStateDir = new File( tempDir, "builds" )
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties.cleanRevision == "1"
+assert properties.cleanStatus == ""
+assert properties.cleanChanged == "false"
+assert properties.modifiedRevision == "1"
+assert properties.modifiedStatus == "M"
+assert properties.modifiedChanged == "true"
+assert properties.changedProjects == "com.google.code.maven-svn-revision-number-plugin.it:configuration-changed-since-last-build"
+
+println "checking build state"
+
+assert buildStateDir.listFiles().findAll { it.name.endsWith( ".properties" ) }.size() == 2
+
+return true
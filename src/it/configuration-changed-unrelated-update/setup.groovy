@@ -0,0 +1,94 @@
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory
+import org.tmatesoft.svn.core.wc2.SvnTarget
+
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def workingCopyDir = new File( tempDir, "wc" )
+def updatedWorkingCopyDir = new File( tempDir, "wc-updated" )
+
+def unrelatedDir = new File( workingCopyDir, "unrelated" )
+def unrelatedFile = new File( unrelatedDir, "file.txt" )
+def modifiedDir = new File( workingCopyDir, "modified" )
+def modifiedFile = new File( modifiedDir, "file.txt" )
+def updatedDir = new File( workingCopyDir, "updated" )
+def updatedFile = new File( updatedDir, "file.txt" )
+
+def copyDir
+copyDir = { File source, File target ->
+    target.mkdirs()
+    source.eachFile { file ->
+        if ( file.isDirectory() ) {
+            copyDir( file, new File( target, file.name ) )
+        } else {
+            new File( target, file.name ).bytes = file.bytes
+        }
+    }
+}
+
+println "cleaning temp directory"
+tempDir.deleteDir()
+tempDir.mkdirs()
+
+println "creating repository"
+FSRepositoryFactory.setup()
+def repositoryUrl = SVNRepositoryFactory.createLocalRepository( repositoryDir, null, false, false, false, false, false, false, true )
+
+println "creating working copy"
+def operationFactory = new SvnOperationFactory()
+operationFactory.setPrimaryWcGeneration( SvnWcGeneration.V17 )
+
+println "  checking out"
+def genericCheckout = operationFactory.createCheckout()
+genericCheckout.setSource( SvnTarget.fromURL( repositoryUrl ) )
+genericCheckout.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCheckout.run()
+
+println "  creating generic content"
+unrelatedDir.mkdirs()
+unrelatedFile << "content"
+modifiedDir.mkdirs()
+modifiedFile << "content"
+updatedDir.mkdirs()
+updatedFile << "content"
+
+def genericAdd = operationFactory.createScheduleForAddition()
+genericAdd.addTarget( SvnTarget.fromFile( unrelatedDir ) )
+genericAdd.addTarget( SvnTarget.fromFile( unrelatedFile ) )
+genericAdd.addTarget( SvnTarget.fromFile( modifiedDir ) )
+genericAdd.addTarget( SvnTarget.fromFile( modifiedFile ) )
+genericAdd.addTarget( SvnTarget.fromFile( updatedDir ) )
+genericAdd.addTarget( SvnTarget.fromFile( updatedFile ) )
+genericAdd.run()
+
+def genericCommit = operationFactory.createCommit()
+genericCommit.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCommit.setCommitMessage( "generic content" )
+genericCommit.run()
+
+def genericUpdate = operationFactory.createUpdate();
+genericUpdate.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericUpdate.run()
+
+println "  creating test content"
+modifiedFile << "modified"
+
+println "  creating updated working copy"
+copyDir( workingCopyDir, updatedWorkingCopyDir )
+
+new File( updatedWorkingCopyDir, "updated/file.txt" ) << "updated"
+
+def updatedCommit = operationFactory.createCommit()
+updatedCommit.setSingleTarget( SvnTarget.fromFile( new File( updatedWorkingCopyDir, "updated/file.txt" ) ) )
+updatedCommit.setCommitMessage( "updated content" )
+updatedCommit.run()
+
+def updatedUpdate = operationFactory.createUpdate();
+updatedUpdate.setSingleTarget( SvnTarget.fromFile( updatedWorkingCopyDir ) )
+updatedUpdate.run()
+
+return true
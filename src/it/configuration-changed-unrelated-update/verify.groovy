@@ -0,0 +1,25 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+// the update changed only the working copy revision of the unrelated entry
+assert properties.unrelatedRevision == "2"
+assert properties.unrelatedCommittedRevision == "1"
+assert properties.unrelatedChanged == "false"
+
+// the local modification was not touched since the last build
+assert properties.modifiedStatus == "M"
+assert properties.modifiedChanged == "false"
+
+assert properties.updatedCommittedRevision == "2"
+assert properties.updatedChanged == "true"
+
+return true
@@ -0,0 +1,29 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties."excluded.revision" == "1"
+assert properties."excluded.status" == ""
+assert properties."excluded.metrics.excludedNodes" == "2"
+
+assert properties."wildcard.revision" == "1"
+assert properties."wildcard.status" == "?"
+assert properties."wildcard.metrics.excludedNodes" == "2"
+
+// the unversioned target directory is reported as a single node, its classes are never walked
+assert properties."unversioned.status" == "M"
+assert properties."unversioned.metrics.excludedNodes" == "1"
+
+assert properties."included.status" == "M"
+
+assert properties."full.status" == "M?"
+
+return true
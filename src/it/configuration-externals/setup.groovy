@@ -0,0 +1,74 @@
+import org.tmatesoft.svn.core.SVNPropertyValue
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory
+import org.tmatesoft.svn.core.wc2.SvnTarget
+
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def workingCopyDir = new File( tempDir, "wc" )
+
+def mainDir = new File( workingCopyDir, "main" )
+def mainFile = new File( mainDir, "main.txt" )
+def libDir = new File( workingCopyDir, "lib" )
+def libFile = new File( libDir, "lib.txt" )
+
+println "cleaning temp directory"
+tempDir.deleteDir()
+tempDir.mkdirs()
+
+println "creating repository"
+FSRepositoryFactory.setup()
+def repositoryUrl = SVNRepositoryFactory.createLocalRepository( repositoryDir, null, false, false, false, false, false, false, true )
+
+println "creating working copy"
+def operationFactory = new SvnOperationFactory()
+operationFactory.setPrimaryWcGeneration( SvnWcGeneration.V17 )
+
+println "  checking out"
+def genericCheckout = operationFactory.createCheckout()
+genericCheckout.setSource( SvnTarget.fromURL( repositoryUrl ) )
+genericCheckout.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCheckout.run()
+
+println "  creating generic content"
+mainDir.mkdirs()
+mainFile << "content"
+libDir.mkdirs()
+libFile << "content"
+
+def genericAdd = operationFactory.createScheduleForAddition()
+genericAdd.addTarget( SvnTarget.fromFile( mainDir ) )
+genericAdd.addTarget( SvnTarget.fromFile( mainFile ) )
+genericAdd.addTarget( SvnTarget.fromFile( libDir ) )
+genericAdd.addTarget( SvnTarget.fromFile( libFile ) )
+genericAdd.run()
+
+def genericCommit = operationFactory.createCommit()
+genericCommit.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCommit.setCommitMessage( "generic content" )
+genericCommit.run()
+
+println "  creating externals"
+def externalsSet = operationFactory.createSetProperty()
+externalsSet.setSingleTarget( SvnTarget.fromFile( mainDir ) )
+externalsSet.setPropertyName( "svn:externals" )
+externalsSet.setPropertyValue( SVNPropertyValue.create( "^/lib lib" ) )
+externalsSet.run()
+
+def externalsCommit = operationFactory.createCommit()
+externalsCommit.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+externalsCommit.setCommitMessage( "externals" )
+externalsCommit.run()
+
+def genericUpdate = operationFactory.createUpdate();
+genericUpdate.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericUpdate.run()
+
+println "  creating test content"
+new File( mainDir, "lib/lib.txt" ) << "modified"
+
+return true
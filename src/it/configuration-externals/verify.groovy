@@ -0,0 +1,28 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties."scanned.revision" == "2"
+assert properties."scanned.committedRevision" == "2"
+assert properties."scanned.status" == "MX"
+assert properties."scanned.externals.lib.path" == "lib"
+assert properties."scanned.externals.lib.revision" == "2"
+assert properties."scanned.externals.lib.committedRevision" == "1"
+assert properties."scanned.externals.lib.status" == "M"
+
+assert properties."inline.status" == "MX"
+assert properties."inline.externals.lib.status" == '${inline.externals.lib.status}'
+
+println "checking log"
+def log = new File( basedir, "build.log" ).getText( "UTF-8" )
+assert log.contains( "scanning 1 externals concurrently" )
+
+return true
@@ -0,0 +1,48 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def workingCopyDir = new File( tempDir, "wc" )
+
+def dir = new File( workingCopyDir, "parent/directory" )
+def file = new File( dir, "file.txt" )
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties.repository =~ /\/repo$/
+assert properties.path == "parent/directory"
+assert properties.revision == "1"
+assert properties.mixedRevisions == "false"
+assert properties.committedRevision == "1"
+assert properties.committedDate ==~ /^\d{4}-\d{2}-\d{2} \d{2}:\d{2}:\d{2} .*/
+assert properties.status == ""
+assert properties.specialStatus == ""
+
+assert properties."other.path" == "parent/other"
+assert properties."other.revision" == "1"
+assert properties."other.mixedRevisions" == "false"
+assert properties."other.committedRevision" == "1"
+assert properties."other.status" == "*"
+assert properties."other.specialStatus" == "d"
+
+assert properties."root.path" == "parent"
+assert properties."root.revision" == "1"
+assert properties."root.mixedRevisions" == "false"
+assert properties."root.committedRevision" == "1"
+assert properties."root.status" == "?*"
+assert properties."root.specialStatus" == "ud"
+
+println "checking out-of-date check"
+
+def buildLog = new File( basedir, "build.log" ).getText( "UTF-8" )
+assert buildLog.contains( "out-of-date check = head" )
+assert buildLog.contains( "head revision = 2" )
+
+return true
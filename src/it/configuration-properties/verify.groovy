@@ -0,0 +1,28 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties.revision == "1"
+assert properties.committedRevision == "1"
+assert properties.repository == '${properties.repository}'
+assert properties.status == '${properties.status}'
+assert properties."metrics.nodes" == "0"
+assert properties."metrics.contentComparisons" == "0"
+
+assert properties."location.repository" =~ /\/repo$/
+assert properties."location.path" == "directory"
+assert properties."location.revision" == '${location.revision}'
+assert properties."location.metrics.nodes" == "0"
+
+assert properties."full.revision" == "1"
+assert properties."full.status" == "M"
+
+return true
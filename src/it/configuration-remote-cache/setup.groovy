@@ -0,0 +1,89 @@
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory
+import org.tmatesoft.svn.core.wc2.SvnTarget
+
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def workingCopyDir = new File( tempDir, "wc" )
+
+def parentDir = new File( workingCopyDir, "parent" )
+def dir = new File( parentDir, "directory" )
+def file = new File( dir, "file.txt" )
+def otherDir = new File( parentDir, "other" )
+def otherFile = new File( otherDir, "file.txt" )
+
+println "cleaning temp directory"
+tempDir.deleteDir()
+tempDir.mkdirs()
+
+println "creating repository"
+FSRepositoryFactory.setup()
+def repositoryUrl = SVNRepositoryFactory.createLocalRepository( repositoryDir, null, false, false, false, false, false, false, true )
+
+println "creating working copy"
+def operationFactory = new SvnOperationFactory()
+operationFactory.setPrimaryWcGeneration( SvnWcGeneration.V17 )
+
+println "  checking out"
+def genericCheckout = operationFactory.createCheckout()
+genericCheckout.setSource( SvnTarget.fromURL( repositoryUrl ) )
+genericCheckout.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCheckout.run()
+
+println "  creating generic content"
+dir.mkdirs()
+file << "content"
+otherDir.mkdirs()
+otherFile << "content"
+
+def genericAdd = operationFactory.createScheduleForAddition()
+genericAdd.addTarget( SvnTarget.fromFile( parentDir ) )
+genericAdd.addTarget( SvnTarget.fromFile( dir ) )
+genericAdd.addTarget( SvnTarget.fromFile( file ) )
+genericAdd.addTarget( SvnTarget.fromFile( otherDir ) )
+genericAdd.addTarget( SvnTarget.fromFile( otherFile ) )
+genericAdd.run()
+
+def genericCommit = operationFactory.createCommit()
+genericCommit.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCommit.setCommitMessage( "generic content" )
+genericCommit.run()
+
+def genericUpdate = operationFactory.createUpdate();
+genericUpdate.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericUpdate.run()
+
+println "  creating test content"
+def otherWorkingCopyDir = new File( tempDir, "other-wc" )
+def otherCheckout = operationFactory.createCheckout()
+otherCheckout.setSource( SvnTarget.fromURL( repositoryUrl ) )
+otherCheckout.setSingleTarget( SvnTarget.fromFile( otherWorkingCopyDir ) )
+otherCheckout.run()
+
+new File( otherWorkingCopyDir, "parent/other/file.txt" ) << "modified"
+
+def otherCommit = operationFactory.createCommit()
+otherCommit.setSingleTarget( SvnTarget.fromFile( otherWorkingCopyDir ) )
+otherCommit.setCommitMessage( "remote modification" )
+otherCommit.run()
+
+new File( parentDir, "unversioned.txt" ) << "content"
+
+println "creating remote cache"
+// the results stored by other builds: one with a longer time to live, one older than its own time to live, and one
+// stored by a previous version without the time to live
+def now = System.currentTimeMillis()
+def hour = 3600L * 1000L
+def cache = new Properties()
+cache.setProperty( "long-lived", "${now - 2 * hour},${24 * hour};long-lived result".toString() )
+cache.setProperty( "expired", "${now - 25 * hour},${24 * hour};expired result".toString() )
+cache.setProperty( "legacy", "${now - 2 * hour};legacy result".toString() )
+new File( tempDir, "remote-cache.properties" ).withOutputStream {
+    cache.store( it, null )
+}
+
+return true
@@ -0,0 +1,33 @@
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties."first.status" == "*"
+assert properties."first.metrics.remoteSessions" ==~ /[1-9]\d*/
+
+assert properties."second.status" == "*"
+assert properties."second.metrics.remoteSessions" == "0"
+
+assert properties."offline.status" == ""
+assert properties."offline.metrics.remoteSessions" == "0"
+
+println "checking cache file"
+
+def cacheFile = new File( basedir, "svn/remote-cache.properties" )
+assert cacheFile.isFile()
+def cache = new Properties()
+cacheFile.withInputStream {
+    cache.load( it )
+}
+assert cache.getProperty( "long-lived" ) =~ /;long-lived result$/
+assert cache.getProperty( "expired" ) == null
+assert cache.getProperty( "legacy" ) == null
+assert cache.stringPropertyNames().any { it.contains( ";status;" ) }
+assert !new File( basedir, "target/empty-cache.properties" ).exists()
+
+return true
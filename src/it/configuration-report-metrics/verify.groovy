@@ -0,0 +1,47 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def workingCopyDir = new File( tempDir, "wc" )
+
+def dir = new File( workingCopyDir, "directory" )
+def file = new File( dir, "file.txt" )
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties.repository =~ /\/repo$/
+assert properties.path == "directory"
+assert properties.revision == "1"
+assert properties.mixedRevisions == "false"
+assert properties.committedRevision == "1"
+assert properties.committedDate ==~ /^\d{4}-\d{2}-\d{2} \d{2}:\d{2}:\d{2} .*/
+assert properties.status == "M"
+assert properties.specialStatus == "M"
+assert properties."metrics.totalTime" ==~ /\d+/
+assert properties."metrics.statusTime" ==~ /\d+/
+assert properties."metrics.nodes" == "2"
+assert properties."metrics.contentComparisons" == "1"
+assert properties."metrics.remoteSessions" == "0"
+
+assert properties."remote.status" == "M"
+assert properties."remote.metrics.remoteSessions" ==~ /[1-9]\d*/
+assert properties."remote.metrics.remoteTime" ==~ /\d+/
+
+println "checking metrics report"
+
+def metricsFile = new File( basedir, "target/svn-revision-number-metrics.json" )
+assert metricsFile.isFile()
+def metrics = metricsFile.getText( "UTF-8" )
+assert metrics.contains( "\"project\": \"com.google.code.maven-svn-revision-number-plugin.it:configuration-report-metrics\"" )
+assert metrics.contains( "\"prefix\": \"properties\"" )
+assert metrics.contains( "\"nodes\": 2" )
+assert metrics.contains( "\"contentComparisons\": 1" )
+
+return true
@@ -0,0 +1,53 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def loadProperties = { module ->
+    def propertiesFile = new File( basedir, module + "/target/classes/properties.txt" )
+    def properties = new Properties();
+    propertiesFile.withReader( "UTF-8" ) {
+        properties.load( it )
+    }
+    return properties
+}
+
+println "reading properties"
+def first = loadProperties( "first" )
+def second = loadProperties( "second" )
+
+println "checking properties"
+
+assert first.repository =~ /\/repo$/
+assert first.path == "parent/directory"
+assert first.revision == "1"
+assert first.mixedRevisions == "false"
+assert first.committedRevision == "1"
+assert first.committedDate ==~ /^\d{4}-\d{2}-\d{2} \d{2}:\d{2}:\d{2} .*/
+assert first.status == ""
+assert first.specialStatus == ""
+
+assert second."other.path" == "parent/other"
+assert second."other.revision" == "1"
+assert second."other.mixedRevisions" == "false"
+assert second."other.committedRevision" == "1"
+assert second."other.status" == "M"
+assert second."other.specialStatus" == "M"
+
+[first, second].each { properties ->
+    assert properties."root.path" == "parent"
+    assert properties."root.revision" == "1"
+    assert properties."root.mixedRevisions" == "false"
+    assert properties."root.committedRevision" == "1"
+    assert properties."root.status" == "M?"
+    assert properties."root.specialStatus" == "Mu"
+}
+
+println "checking shared scans"
+
+def scans = [first."metrics.sharedScans", first."root.metrics.sharedScans", second."other.metrics.sharedScans", second."root.metrics.sharedScans"]
+assert scans.every { it ==~ /\d+/ }
+assert scans.collect { it as int }.sum() == 1
+
+def log = new File( basedir, "build.log" ).getText( "UTF-8" )
+assert log.count( "shared scan root = " ) == 4
+
+return true
@@ -0,0 +1,79 @@
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory
+import org.tmatesoft.svn.core.wc2.SvnTarget
+
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def workingCopyDir = new File( tempDir, "wc" )
+
+def unversionedDir = new File( workingCopyDir, "unversioned" )
+def brokenDir = new File( workingCopyDir, "broken" )
+
+println "cleaning temp directory"
+tempDir.deleteDir()
+tempDir.mkdirs()
+
+println "creating repository"
+FSRepositoryFactory.setup()
+def repositoryUrl = SVNRepositoryFactory.createLocalRepository( repositoryDir, null, false, false, false, false, false, false, true )
+
+println "creating working copy"
+def operationFactory = new SvnOperationFactory()
+operationFactory.setPrimaryWcGeneration( SvnWcGeneration.V17 )
+
+println "  checking out"
+def genericCheckout = operationFactory.createCheckout()
+genericCheckout.setSource( SvnTarget.fromURL( repositoryUrl ) )
+genericCheckout.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCheckout.run()
+
+println "  creating generic content"
+unversionedDir.mkdirs()
+brokenDir.mkdirs()
+
+def genericAdd = operationFactory.createScheduleForAddition()
+genericAdd.addTarget( SvnTarget.fromFile( unversionedDir ) )
+genericAdd.addTarget( SvnTarget.fromFile( brokenDir ) )
+genericAdd.run()
+
+def genericCommit = operationFactory.createCommit()
+genericCommit.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCommit.setCommitMessage( "generic content" )
+genericCommit.run()
+
+println "creating svn executable"
+// the fake client reports that the unversioned directory is not a working copy, and writes a large malformed output
+// for the broken directory that would fill the pipe if it was not read after the parse error
+def svnFile = new File( tempDir, "svn" )
+svnFile.withWriter( "UTF-8" ) {
+    it << """#!/bin/sh
+echo "\$@" >> "${tempDir.absolutePath}/arguments.txt"
+for last; do true; done
+case "\$1" in
+    --version) echo "1.7.5" ;;
+    status|info)
+        case "\$last" in
+            */unversioned)
+                echo '<?xml version="1.0" encoding="UTF-8"?>'
+                echo '<status>'
+                echo "svn: warning: W155007: '\$last' is not a working copy" >&2
+                echo '</status>'
+                ;;
+            *)
+                echo '<?xml version="1.0" encoding="UTF-8"?>'
+                echo '<status>'
+                yes '<broken' | head -n 200000
+                ;;
+        esac
+        ;;
+    *) exit 1 ;;
+esac
+"""
+}
+svnFile.setExecutable( true )
+
+return true
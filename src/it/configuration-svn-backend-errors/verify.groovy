@@ -0,0 +1,32 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties."unversioned.repository" == ""
+assert properties."unversioned.revision" == "-1"
+assert properties."unversioned.committedRevision" == "-1"
+assert properties."unversioned.status" == "?"
+assert properties."unversioned.specialStatus" == "u"
+
+assert properties."broken.repository" == ""
+assert properties."broken.revision" == "-1"
+assert properties."broken.status" == ""
+
+println "checking svn arguments"
+def arguments = new File( tempDir, "arguments.txt" ).getText( "UTF-8" )
+assert arguments.contains( "/unversioned" )
+assert arguments.contains( "/broken" )
+
+println "checking log"
+def log = new File( basedir, "build.log" ).getText( "UTF-8" )
+assert log.contains( "failed to parse the output" )
+
+return true
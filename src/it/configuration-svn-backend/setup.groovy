@@ -0,0 +1,109 @@
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory
+import org.tmatesoft.svn.core.wc2.SvnTarget
+
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def workingCopyDir = new File( tempDir, "wc" )
+def oldWorkingCopyDir = new File( tempDir, "wc6" )
+
+def dir = new File( workingCopyDir, "directory" )
+def file = new File( dir, "file.txt" )
+
+println "cleaning temp directory"
+tempDir.deleteDir()
+tempDir.mkdirs()
+
+println "creating repository"
+FSRepositoryFactory.setup()
+def repositoryUrl = SVNRepositoryFactory.createLocalRepository( repositoryDir, null, false, false, false, false, false, false, true )
+
+println "creating working copy"
+def operationFactory = new SvnOperationFactory()
+operationFactory.setPrimaryWcGeneration( SvnWcGeneration.V17 )
+
+println "  checking out"
+def genericCheckout = operationFactory.createCheckout()
+genericCheckout.setSource( SvnTarget.fromURL( repositoryUrl ) )
+genericCheckout.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCheckout.run()
+
+println "  creating generic content"
+dir.mkdirs()
+file << "content"
+
+def genericAdd = operationFactory.createScheduleForAddition()
+genericAdd.addTarget( SvnTarget.fromFile( dir ) )
+genericAdd.addTarget( SvnTarget.fromFile( file ) )
+genericAdd.run()
+
+def genericCommit = operationFactory.createCommit()
+genericCommit.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCommit.setCommitMessage( "generic content" )
+genericCommit.run()
+
+def genericUpdate = operationFactory.createUpdate();
+genericUpdate.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericUpdate.run()
+
+println "creating 1.6 working copy"
+def oldOperationFactory = new SvnOperationFactory()
+oldOperationFactory.setPrimaryWcGeneration( SvnWcGeneration.V16 )
+
+def oldCheckout = oldOperationFactory.createCheckout()
+oldCheckout.setSource( SvnTarget.fromURL( repositoryUrl ) )
+oldCheckout.setSingleTarget( SvnTarget.fromFile( oldWorkingCopyDir ) )
+oldCheckout.run()
+
+println "creating svn executable"
+// the fake client reports a modified file in the clean working copy and records its arguments
+def statusFile = new File( tempDir, "status.xml" )
+statusFile.withWriter( "UTF-8" ) {
+    it << """<?xml version="1.0" encoding="UTF-8"?>
+<status>
+<target path="${dir.absolutePath}">
+<entry path="${dir.absolutePath}">
+<wc-status props="none" item="normal" revision="1">
+<commit revision="1"><author>test</author><date>2012-08-01T10:00:00.000000Z</date></commit>
+</wc-status>
+</entry>
+<entry path="${file.absolutePath}">
+<wc-status props="none" item="modified" revision="1">
+<commit revision="1"><author>test</author><date>2012-08-01T10:00:00.000000Z</date></commit>
+</wc-status>
+</entry>
+</target>
+</status>
+"""
+}
+def infoFile = new File( tempDir, "info.xml" )
+infoFile.withWriter( "UTF-8" ) {
+    it << """<?xml version="1.0" encoding="UTF-8"?>
+<info>
+<entry kind="dir" path="${dir.absolutePath}" revision="1">
+<url>${repositoryUrl}/directory</url>
+<repository><root>${repositoryUrl}</root><uuid>00000000-0000-0000-0000-000000000000</uuid></repository>
+<commit revision="1"><author>test</author><date>2012-08-01T10:00:00.000000Z</date></commit>
+</entry>
+</info>
+"""
+}
+def svnFile = new File( tempDir, "svn" )
+svnFile.withWriter( "UTF-8" ) {
+    it << """#!/bin/sh
+echo "\$@" >> "${tempDir.absolutePath}/arguments.txt"
+case "\$1" in
+    --version) echo "1.7.5" ;;
+    status) cat "${statusFile.absolutePath}" ;;
+    info) cat "${infoFile.absolutePath}" ;;
+    *) exit 1 ;;
+esac
+"""
+}
+svnFile.setExecutable( true )
+
+return true
@@ -0,0 +1,38 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties."svn.repository" =~ /\/repo$/
+assert properties."svn.path" == "directory"
+assert properties."svn.revision" == "1"
+assert properties."svn.committedRevision" == "1"
+assert properties."svn.status" == "M"
+
+assert properties."fallback.path" == "directory"
+assert properties."fallback.revision" == "1"
+assert properties."fallback.status" == ""
+
+assert properties."revisions.revision" == "1"
+assert properties."revisions.committedRevision" == "1"
+
+println "checking svn arguments"
+def arguments = new File( tempDir, "arguments.txt" ).getText( "UTF-8" )
+assert arguments.contains( "status --xml --non-interactive --depth infinity -v " )
+assert arguments.contains( "info --xml --non-interactive " )
+// the revisions of the 1.6 working copy are read from the .svn/entries files, not by svn status
+assert !( arguments =~ /(?m)^status .*wc6/ )
+
+println "checking log"
+def log = new File( basedir, "build.log" ).getText( "UTF-8" )
+assert log.contains( "missing-svn executable is not available" )
+assert log.contains( "walked the .svn/entries files" )
+
+return true
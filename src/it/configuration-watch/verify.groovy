@@ -0,0 +1,46 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def workingCopyDir = new File( tempDir, "wc" )
+
+def dir = new File( workingCopyDir, "directory" )
+def file = new File( dir, "file.txt" )
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties.repository =~ /\/repo$/
+assert properties.path == "directory"
+assert properties.revision == "1"
+assert properties.mixedRevisions == "false"
+assert properties.committedRevision == "1"
+assert properties.committedDate ==~ /^\d{4}-\d{2}-\d{2} \d{2}:\d{2}:\d{2} .*/
+assert properties.status == "M"
+assert properties.specialStatus == "M"
+
+assert properties."watched.revision" == "1"
+assert properties."watched.committedRevision" == "1"
+assert properties."watched.status" == "M"
+assert properties."watched.specialStatus" == "M"
+
+println "checking watch usage"
+
+def buildLog = new File( basedir, "build.log" ).getText( "UTF-8" )
+assert buildLog.contains( "restored from the watched state" )
+
+// the file without local modifications is not in the recorded layout, so only the file system notification of its
+// edit can make the last execution inspect it again, and the notifications are delivered immediately only on Linux
+if ( System.getProperty( "os.name" ).toLowerCase( Locale.ENGLISH ).contains( "linux" ) ) {
+    assert properties."edited.status" == "M"
+    assert buildLog.contains( "updating 1 changed items of the watched state" )
+    assert buildLog.count( "checked the watched entry without the recorded layout" ) == 1
+}
+
+return true
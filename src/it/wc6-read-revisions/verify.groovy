@@ -0,0 +1,26 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties."filtered.revision" == "2"
+assert properties."filtered.committedRevision" == "2"
+
+assert properties."externals.revision" == "2"
+assert properties."externals.committedRevision" == "2"
+assert properties."externals.externals.lib.revision" == "2"
+assert properties."externals.externals.lib.committedRevision" == "1"
+
+println "checking log"
+def log = new File( basedir, "build.log" ).getText( "UTF-8" )
+assert log.contains( "scanning 1 externals concurrently" )
+assert log.count( "walked the .svn/entries files" ) == 3
+
+return true
@@ -0,0 +1,19 @@
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+assert properties."touchedContent.status" == ""
+assert properties."touchedTimestamp.status" == "M"
+assert properties."touchedSize.status" == ""
+assert properties."touchedHybrid.status" == ""
+assert properties."rewrittenContent.status" == "M"
+assert properties."rewrittenTimestamp.status" == "M"
+assert properties."rewrittenSize.status" == ""
+assert properties."rewrittenHybrid.status" == ""
+
+return true
@@ -0,0 +1,200 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Records the state of the entries at the last successful build.
+ * <p/>
+ * The state of an entry consists of the entry configuration, the committed revision and the hash of the local changes,
+ * that is of the paths, statuses, sizes and modification times of the nodes with local changes, so editing a modified
+ * file again changes the state even though its status stays the same. The state computed by the {@code revision} goal
+ * is kept in memory until the {@code record-build} goal of the same project stores it, so if the build fails before
+ * that goal then the previously recorded state remains in place.
+ */
+final class BuildState {
+
+    /** The name of the session property that contains the list of the changed projects. */
+    static final String CHANGED_PROJECTS_PROPERTY = "svn-revision-number.changedProjects";
+
+    /** The states that were computed but not stored yet, by the project and the state file. */
+    private static final Map<MavenProject, Map<File, String>> PENDING_STATES = new WeakHashMap<MavenProject, Map<File, String>>();
+
+
+    private final File directory;
+
+
+    /**
+     * Creates a new {@code BuildState} object.
+     *
+     * @param directory the directory that contains the recorded states
+     */
+    BuildState( File directory ) {
+        if ( directory == null ) {
+            throw new IllegalArgumentException( "{directory} is null" );
+        }
+        this.directory = directory;
+    }
+
+
+    /**
+     * Loads the state of the entry recorded at the last successful build.
+     *
+     * @param entry the entry
+     *
+     * @return the recorded state, or {@code null} if there is none
+     *
+     * @throws IOException if the state file cannot be read
+     */
+    String load( Entry entry ) throws IOException {
+        File file = getStateFile( entry );
+        if ( !file.isFile() ) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream( file );
+        try {
+            properties.load( input );
+        } finally {
+            input.close();
+        }
+        return properties.getProperty( "state" );
+    }
+
+    /**
+     * Remembers the current state of the entry until the {@code record-build} goal of the project stores it.
+     *
+     * @param project the project
+     * @param entry the entry
+     * @param state the current state
+     */
+    void addPendingState( MavenProject project, Entry entry, String state ) {
+        synchronized ( PENDING_STATES ) {
+            Map<File, String> projectStates = PENDING_STATES.get( project );
+            if ( projectStates == null ) {
+                projectStates = new LinkedHashMap<File, String>();
+                PENDING_STATES.put( project, projectStates );
+            }
+            projectStates.put( getStateFile( entry ), state );
+        }
+    }
+
+    private File getStateFile( Entry entry ) {
+        return new File( directory, "entry-" + EntryResultCache.digest( entry.getPrefix() + '\u0000' + entry.getPath().getAbsolutePath() ) + ".properties" );
+    }
+
+
+    /**
+     * Stores the pending states of the project, replacing the previously recorded ones.
+     *
+     * @param project the project
+     *
+     * @return the number of stored states
+     *
+     * @throws IOException if a state cannot be stored
+     */
+    static int storePendingStates( MavenProject project ) throws IOException {
+        Map<File, String> projectStates;
+        synchronized ( PENDING_STATES ) {
+            projectStates = PENDING_STATES.remove( project );
+        }
+        if ( projectStates == null ) {
+            return 0;
+        }
+        for ( Map.Entry<File, String> projectState : projectStates.entrySet() ) {
+            store( projectState.getKey(), projectState.getValue() );
+        }
+        return projectStates.size();
+    }
+
+    private static void store( File file, String state ) throws IOException {
+        File stateDirectory = file.getParentFile();
+        if ( !stateDirectory.isDirectory() && !stateDirectory.mkdirs() ) {
+            throw new IOException( "unable to create " + stateDirectory );
+        }
+        Properties properties = new Properties();
+        properties.setProperty( "state", state );
+        File temporaryFile = File.createTempFile( file.getName(), ".tmp", stateDirectory );
+        OutputStream output = new FileOutputStream( temporaryFile );
+        try {
+            properties.store( output, null );
+        } finally {
+            output.close();
+        }
+        if ( !temporaryFile.renameTo( file ) ) {
+            file.delete();
+            if ( !temporaryFile.renameTo( file ) ) {
+                temporaryFile.delete();
+                throw new IOException( "unable to replace " + file );
+            }
+        }
+    }
+
+    /**
+     * Adds the project to the comma-separated list of the changed projects in the session properties, so that the
+     * projects built later in the same reactor can refer to it.
+     *
+     * @param session the build session
+     * @param project the changed project
+     *
+     * @return the updated list
+     */
+    static String addChangedProject( MavenSession session, MavenProject project ) {
+        String projectId = project.getGroupId() + ':' + project.getArtifactId();
+        Properties properties = session.getExecutionProperties();
+        synchronized ( properties ) {
+            String changedProjects = properties.getProperty( CHANGED_PROJECTS_PROPERTY, "" );
+            List<String> projectIds = new ArrayList<String>();
+            for ( String changedProject : changedProjects.split( "," ) ) {
+                if ( changedProject.length() > 0 ) {
+                    projectIds.add( changedProject );
+                }
+            }
+            if ( !projectIds.contains( projectId ) ) {
+                changedProjects = changedProjects.length() == 0 ? projectId : changedProjects + ',' + projectId;
+                properties.setProperty( CHANGED_PROJECTS_PROPERTY, changedProjects );
+            }
+            return changedProjects;
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+import static java.lang.String.format;
+
+/**
+ * Scans the subdirectories immediately below an entry directory concurrently, each thread using its own Subversion
+ * client, and passes the results to the status handler of the entry.
+ */
+final class ConcurrentStatusFiller {
+
+    private final EntryStatusFiller statusFiller;
+
+    private final DebugLog debugLog;
+
+    /** The maximum number of subdirectories scanned at the same time. */
+    private final int scanThreads;
+
+
+    /**
+     * Creates a new {@code ConcurrentStatusFiller} object.
+     *
+     * @param statusFiller the status filler that uses this strategy
+     * @param scanThreads the maximum number of subdirectories scanned at the same time
+     */
+    ConcurrentStatusFiller( EntryStatusFiller statusFiller, int scanThreads ) {
+        if ( statusFiller == null ) {
+            throw new IllegalArgumentException( "{statusFiller} is null" );
+        }
+        this.statusFiller = statusFiller;
+        debugLog = statusFiller.getDebugLog();
+        this.scanThreads = scanThreads;
+    }
+
+
+    /**
+     * Walks the entry directory with the immediates depth and then each versioned subdirectory on its own worker with
+     * the infinity depth.
+     *
+     * @param entry the entry to inspect
+     * @param operationFactory the operation factory that detects the local modifications of the entry
+     * @param statusHandler the status handler of the entry
+     * @param reportAll whether the nodes without local changes should be reported
+     *
+     * @throws SVNException if the working copy could not be read
+     */
+    void fill( final Entry entry, final SvnOperationFactory operationFactory, final StatusHandler statusHandler, final boolean reportAll ) throws SVNException {
+        final String entryPath = entry.getPath().getAbsolutePath();
+        final List<File> subdirectories = new ArrayList<File>();
+        statusFiller.createBackend( entry, operationFactory ).status( entry.getPath(), SVNDepth.IMMEDIATES, reportAll, entry.reportIgnored(), !entry.scanExternals(), new ISvnObjectReceiver<SvnStatus>() {
+            public void receive( SvnTarget target, SvnStatus status ) throws SVNException {
+                statusHandler.receive( target, status );
+                File file = target.getFile();
+                if ( !file.getAbsolutePath().equals( entryPath ) && EntryStatusFiller.isScannedSeparately( status.getNodeStatus() ) && !statusHandler.isScannedExternal( status ) && file.isDirectory() ) {
+                    subdirectories.add( file );
+                }
+            }
+        } );
+        if ( subdirectories.isEmpty() ) {
+            return;
+        }
+
+        debugLog.info( format( "  scanning %s subdirectories concurrently", subdirectories.size() ) );
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( scanThreads, subdirectories.size() ) );
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>( subdirectories.size() );
+            for ( final File subdirectory : subdirectories ) {
+                results.add( executor.submit( new Callable<Object>() {
+                    public Object call() throws SVNException {
+                        final String subdirectoryPath = subdirectory.getAbsolutePath();
+                        SvnOperationFactory subdirectoryOperationFactory = EntryStatusFiller.copyOperationFactory( operationFactory );
+                        try {
+                            statusFiller.createBackend( entry, subdirectoryOperationFactory ).status( subdirectory, SVNDepth.INFINITY, reportAll, entry.reportIgnored(), !entry.scanExternals(), new ISvnObjectReceiver<SvnStatus>() {
+                                public void receive( SvnTarget target, SvnStatus status ) throws SVNException {
+                                    if ( target.getFile().getAbsolutePath().equals( subdirectoryPath ) ) {
+                                        return;
+                                    }
+                                    synchronized ( statusHandler ) {
+                                        statusHandler.receive( target, status );
+                                    }
+                                }
+                            } );
+                            return null;
+                        } finally {
+                            subdirectoryOperationFactory.dispose();
+                        }
+                    }
+                } ) );
+            }
+            for ( Future<Object> result : results ) {
+                EntryStatusFiller.waitForScan( result );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+/** Writes the diagnostic messages at the info and warning levels in the verbose mode and at the debug level otherwise. */
+final class DebugLog {
+
+    private final Log log;
+
+    private final boolean verbose;
+
+
+    /**
+     * Creates a new {@code DebugLog} object.
+     *
+     * @param log the log of the goal
+     * @param verbose whether the goal runs in the verbose mode
+     */
+    DebugLog( Log log, boolean verbose ) {
+        if ( log == null ) {
+            throw new IllegalArgumentException( "{log} is null" );
+        }
+        this.log = log;
+        this.verbose = verbose;
+    }
+
+
+    Log getLog() {
+        return log;
+    }
+
+    boolean isVerbose() {
+        return verbose;
+    }
+
+    void info( CharSequence message ) {
+        if ( verbose ) {
+            if ( log.isInfoEnabled() ) {
+                log.info( message );
+            }
+        } else {
+            if ( log.isDebugEnabled() ) {
+                log.debug( message );
+            }
+        }
+    }
+
+    void warning( CharSequence message ) {
+        if ( verbose ) {
+            if ( log.isWarnEnabled() ) {
+                log.warn( message );
+            }
+        } else {
+            if ( log.isDebugEnabled() ) {
+                log.debug( message );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,496 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+import org.tmatesoft.svn.core.internal.util.SVNEncodingUtil;
+
+/**
+ * Reads the revision metadata of the 1.4-1.6 working copy directly from the {@code .svn/entries} files.
+ * <p/>
+ * Each versioned directory of such working copy has its own {@code entries} file, so the files of the subdirectories
+ * are read and parsed concurrently. Each file is read with a single call into a buffer of its size. Only the nodes
+ * that exist in the repository are taken into account, the nodes scheduled for addition or copied are skipped, which
+ * matches the {@code BASE} layer read by {@link WcDbReader} for the 1.7+ working copies.
+ */
+final class EntriesReader {
+
+    private static final String ENTRIES = ".svn/entries";
+
+    private static final String DIR_PROP_BASE = ".svn/dir-prop-base";
+
+    /** The oldest format of the {@code entries} file that is not XML. */
+    private static final int MINIMUM_FORMAT = 8;
+
+    private static final int NAME = 0;
+
+    private static final int KIND = 1;
+
+    private static final int REVISION = 2;
+
+    private static final int URL = 3;
+
+    private static final int REPOSITORY = 4;
+
+    private static final int SCHEDULE = 5;
+
+    private static final int COMMITTED_DATE = 8;
+
+    private static final int COMMITTED_REVISION = 9;
+
+    private static final int COPIED = 19;
+
+    private static final int DELETED = 22;
+
+    private static final int ABSENT = 23;
+
+
+    private final int threads;
+
+
+    /**
+     * Creates a new {@code EntriesReader} object.
+     *
+     * @param threads the number of threads used to read the {@code entries} files of the subdirectories
+     */
+    EntriesReader( int threads ) {
+        this.threads = threads;
+    }
+
+
+    /**
+     * Checks whether the directory of the specified path contains the {@code entries} file.
+     *
+     * @param path the path inside the working copy
+     *
+     * @return {@code true} if the {@code entries} file exists
+     */
+    static boolean exists( File path ) {
+        return new File( path.isDirectory() ? path : path.getAbsoluteFile().getParentFile(), ENTRIES ).isFile();
+    }
+
+    /**
+     * Reads the metadata of the specified path.
+     *
+     * @param path the path inside the working copy
+     * @param depth the depth of nodes below the path to take into account
+     * @param aggregate the aggregate to add the node revisions to
+     *
+     * @return the repository location of the path, or {@code null} if the path is not versioned or its location is not
+     *         recorded
+     *
+     * @throws IOException if some {@code entries} file can not be read or has an unsupported format
+     */
+    WcDbReader.Location read( File path, SVNDepth depth, StatusAggregate aggregate ) throws IOException {
+        File absolutePath = path.getAbsoluteFile();
+        if ( !absolutePath.isDirectory() ) {
+            return readFile( absolutePath, aggregate );
+        }
+        DirectoryMetadata metadata = readDirectory( new Directory( absolutePath, depth ) );
+        aggregate.add( metadata.aggregate );
+        if ( !metadata.subdirectories.isEmpty() ) {
+            if ( threads > 1 ) {
+                readConcurrently( metadata.subdirectories, aggregate );
+            } else {
+                readSequentially( metadata.subdirectories, aggregate );
+            }
+        }
+        return metadata.location;
+    }
+
+
+    private static WcDbReader.Location readFile( File file, StatusAggregate aggregate ) throws IOException {
+        List<String[]> records = parse( file.getParentFile() );
+        String[] directoryRecord = records.get( 0 );
+        for ( String[] record : records ) {
+            if ( record != directoryRecord && file.getName().equals( get( record, NAME ) ) ) {
+                if ( !isBase( record ) ) {
+                    return null;
+                }
+                addRevisions( record, directoryRecord, aggregate );
+                String url = get( record, URL );
+                if ( url.length() == 0 && get( directoryRecord, URL ).length() > 0 ) {
+                    url = get( directoryRecord, URL ) + '/' + SVNEncodingUtil.uriEncode( file.getName() );
+                }
+                return createLocation( get( directoryRecord, REPOSITORY ), url );
+            }
+        }
+        return null;
+    }
+
+    private void readConcurrently( List<Directory> directories, StatusAggregate aggregate ) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            CompletionService<DirectoryMetadata> reads = new ExecutorCompletionService<DirectoryMetadata>( executor );
+            int pendingReads = 0;
+            for ( Directory directory : directories ) {
+                reads.submit( createRead( directory ) );
+                pendingReads++;
+            }
+            while ( pendingReads > 0 ) {
+                DirectoryMetadata metadata = reads.take().get();
+                pendingReads--;
+                aggregate.add( metadata.aggregate );
+                for ( Directory subdirectory : metadata.subdirectories ) {
+                    reads.submit( createRead( subdirectory ) );
+                    pendingReads++;
+                }
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "interrupted while reading the entries files" );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            } else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            } else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            } else {
+                throw new IOException( String.valueOf( cause ) );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Callable<DirectoryMetadata> createRead( final Directory directory ) {
+        return new Callable<DirectoryMetadata>() {
+            public DirectoryMetadata call() throws IOException {
+                return readDirectory( directory );
+            }
+        };
+    }
+
+    private void readSequentially( List<Directory> directories, StatusAggregate aggregate ) throws IOException {
+        LinkedList<Directory> pendingDirectories = new LinkedList<Directory>( directories );
+        while ( !pendingDirectories.isEmpty() ) {
+            DirectoryMetadata metadata = readDirectory( pendingDirectories.removeFirst() );
+            aggregate.add( metadata.aggregate );
+            pendingDirectories.addAll( 0, metadata.subdirectories );
+        }
+    }
+
+    /**
+     * Reads the {@code entries} file of the directory. The subdirectories are returned instead of being read, so that
+     * the caller decides how to read them.
+     */
+    private static DirectoryMetadata readDirectory( Directory directory ) throws IOException {
+        DirectoryMetadata metadata = new DirectoryMetadata();
+        if ( !new File( directory.path, ENTRIES ).isFile() ) {
+            // a missing or obstructed directory, it has no metadata
+            return metadata;
+        }
+        List<String[]> records = parse( directory.path );
+        String[] directoryRecord = records.get( 0 );
+        metadata.location = createLocation( get( directoryRecord, REPOSITORY ), get( directoryRecord, URL ) );
+        if ( !isBase( directoryRecord ) ) {
+            return metadata;
+        }
+        addRevisions( directoryRecord, directoryRecord, metadata.aggregate );
+        if ( SVNDepth.EMPTY.equals( directory.depth ) ) {
+            return metadata;
+        }
+        for ( String[] record : records ) {
+            if ( record == directoryRecord || !isBase( record ) ) {
+                continue;
+            }
+            if ( "dir".equals( get( record, KIND ) ) ) {
+                if ( SVNDepth.INFINITY.equals( directory.depth ) ) {
+                    metadata.subdirectories.add( new Directory( new File( directory.path, get( record, NAME ) ), SVNDepth.INFINITY ) );
+                } else if ( SVNDepth.IMMEDIATES.equals( directory.depth ) ) {
+                    metadata.subdirectories.add( new Directory( new File( directory.path, get( record, NAME ) ), SVNDepth.EMPTY ) );
+                }
+            } else {
+                addRevisions( record, directoryRecord, metadata.aggregate );
+            }
+        }
+        if ( SVNDepth.INFINITY.equals( directory.depth ) ) {
+            for ( String externalPath : readExternalPaths( directory.path ) ) {
+                File external = new File( directory.path, externalPath );
+                if ( new File( external, ENTRIES ).isFile() ) {
+                    metadata.subdirectories.add( new Directory( external, SVNDepth.INFINITY ) );
+                }
+            }
+        }
+        return metadata;
+    }
+
+    /** Checks whether the node exists in the repository, that is whether it is not added, copied, deleted or absent. */
+    private static boolean isBase( String[] record ) {
+        return !"add".equals( get( record, SCHEDULE ) ) && get( record, COPIED ).length() == 0
+                && get( record, DELETED ).length() == 0 && get( record, ABSENT ).length() == 0;
+    }
+
+    private static void addRevisions( String[] record, String[] directoryRecord, StatusAggregate aggregate ) {
+        String revision = get( record, REVISION );
+        if ( revision.length() == 0 ) {
+            // the files inherit the revision of the directory
+            revision = get( directoryRecord, REVISION );
+        }
+        String committedRevision = get( record, COMMITTED_REVISION );
+        String committedDate = get( record, COMMITTED_DATE );
+        aggregate.addRevisions(
+                revision.length() == 0 ? -1L : Long.parseLong( revision ),
+                committedRevision.length() == 0 ? -1L : Long.parseLong( committedRevision ),
+                committedDate.length() == 0 ? null : SVNDate.parseDate( committedDate ) );
+    }
+
+    private static WcDbReader.Location createLocation( String repositoryRoot, String url ) {
+        if ( repositoryRoot.length() == 0 || !url.startsWith( repositoryRoot ) ) {
+            return null;
+        }
+        String repositoryPath = url.substring( repositoryRoot.length() );
+        if ( repositoryPath.startsWith( "/" ) ) {
+            repositoryPath = repositoryPath.substring( 1 );
+        }
+        return new WcDbReader.Location( repositoryRoot, SVNEncodingUtil.uriDecode( repositoryPath ) );
+    }
+
+    private static String get( String[] record, int field ) {
+        return field < record.length ? record[ field ] : "";
+    }
+
+
+    /**
+     * Parses the {@code entries} file of the directory.
+     *
+     * @param directory the working copy directory
+     *
+     * @return the records of the file, the first one describes the directory itself
+     *
+     * @throws IOException if the file can not be read or has an unsupported format
+     */
+    private static List<String[]> parse( File directory ) throws IOException {
+        File file = new File( directory, ENTRIES );
+        String contents = read( file, "UTF-8" );
+        int lineEnd = contents.indexOf( '\n' );
+        int format;
+        try {
+            format = Integer.parseInt( lineEnd < 0 ? contents : contents.substring( 0, lineEnd ) );
+        } catch ( NumberFormatException e ) {
+            // the XML format used by the 1.3 and older clients
+            throw new IOException( "unsupported format of " + file );
+        }
+        if ( format < MINIMUM_FORMAT ) {
+            throw new IOException( "unsupported format " + format + " of " + file );
+        }
+        List<String[]> records = new ArrayList<String[]>();
+        List<String> fields = new ArrayList<String>();
+        int position = lineEnd + 1;
+        while ( position < contents.length() ) {
+            int fieldEnd = contents.indexOf( '\n', position );
+            if ( fieldEnd < 0 ) {
+                fieldEnd = contents.length();
+            }
+            String field = contents.substring( position, fieldEnd );
+            position = fieldEnd + 1;
+            if ( "\f".equals( field ) ) {
+                records.add( fields.toArray( new String[ fields.size() ] ) );
+                fields.clear();
+            } else {
+                fields.add( unescape( field ) );
+            }
+        }
+        if ( records.isEmpty() ) {
+            throw new IOException( "no directory entry in " + file );
+        }
+        return records;
+    }
+
+    /** Reads the whole file with a single call into a buffer of the file size. */
+    private static String read( File file, String charset ) throws IOException {
+        FileInputStream input = new FileInputStream( file );
+        try {
+            FileChannel channel = input.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate( (int) channel.size() );
+            while ( buffer.hasRemaining() && channel.read( buffer ) >= 0 ) {
+                // read until the buffer is full
+            }
+            return new String( buffer.array(), 0, buffer.position(), charset );
+        } finally {
+            input.close();
+        }
+    }
+
+    /** Replaces the {@code \xNN} escapes of the control characters and the backslash. */
+    private static String unescape( String field ) {
+        if ( field.indexOf( '\\' ) < 0 ) {
+            return field;
+        }
+        StringBuilder result = new StringBuilder( field.length() );
+        for ( int i = 0; i < field.length(); i++ ) {
+            char c = field.charAt( i );
+            if ( c == '\\' && i + 3 < field.length() && field.charAt( i + 1 ) == 'x' ) {
+                try {
+                    result.append( (char) Integer.parseInt( field.substring( i + 2, i + 4 ), 16 ) );
+                    i += 3;
+                    continue;
+                } catch ( NumberFormatException e ) {
+                    // not an escape
+                }
+            }
+            result.append( c );
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the local paths of the externals defined by the {@code svn:externals} property of the directory.
+     * <p/>
+     * Both the pre-1.5 {@code path [-rN] URL} and the {@code [-rN] URL[@peg] path} definitions are supported, including
+     * the relative URLs that start with {@code ../}, {@code ^/}, {@code //} or {@code /}.
+     */
+    static List<String> readExternalPaths( File directory ) throws IOException {
+        List<String> externalPaths = new ArrayList<String>();
+        File file = new File( directory, DIR_PROP_BASE );
+        if ( !file.isFile() ) {
+            return externalPaths;
+        }
+        // the item lengths of the property file are in bytes, so the file is read as single-byte characters
+        String externals = readProperty( read( file, "ISO-8859-1" ), "svn:externals" );
+        if ( externals == null ) {
+            return externalPaths;
+        }
+        for ( String line : new String( externals.getBytes( "ISO-8859-1" ), "UTF-8" ).split( "\n" ) ) {
+            line = line.trim();
+            if ( line.length() == 0 || line.startsWith( "#" ) ) {
+                continue;
+            }
+            List<String> tokens = new ArrayList<String>();
+            boolean revisionValue = false;
+            for ( String token : line.split( "\\s+" ) ) {
+                if ( revisionValue ) {
+                    revisionValue = false;
+                } else if ( token.startsWith( "-r" ) ) {
+                    revisionValue = token.length() == 2;
+                } else {
+                    tokens.add( token );
+                }
+            }
+            if ( tokens.size() < 2 ) {
+                continue;
+            }
+            String first = tokens.get( 0 );
+            boolean url = first.indexOf( "://" ) > 0 || first.startsWith( "^/" ) || first.startsWith( "/" ) || first.startsWith( "../" );
+            externalPaths.add( url ? tokens.get( tokens.size() - 1 ) : first );
+        }
+        return externalPaths;
+    }
+
+    /**
+     * Returns the value of the property from the hash dump format of the property files.
+     *
+     * @param contents the property file contents
+     * @param name the property name
+     *
+     * @return the property value, or {@code null} if the property is not set
+     */
+    private static String readProperty( String contents, String name ) {
+        try {
+            int position = 0;
+            while ( contents.startsWith( "K ", position ) ) {
+                String key = readValue( contents, position );
+                if ( key == null ) {
+                    return null;
+                }
+                position = skipValue( contents, position );
+                if ( !contents.startsWith( "V ", position ) ) {
+                    return null;
+                }
+                if ( key.equals( name ) ) {
+                    return readValue( contents, position );
+                }
+                position = skipValue( contents, position );
+            }
+        } catch ( NumberFormatException e ) {
+            // a malformed file, the property is not taken into account
+        }
+        return null;
+    }
+
+    /** Returns the value of the {@code K} or {@code V} item that starts at the position. */
+    private static String readValue( String contents, int position ) {
+        int lineEnd = contents.indexOf( '\n', position );
+        if ( lineEnd < 0 ) {
+            return null;
+        }
+        int length = Integer.parseInt( contents.substring( position + 2, lineEnd ) );
+        return lineEnd + 1 + length > contents.length() ? null : contents.substring( lineEnd + 1, lineEnd + 1 + length );
+    }
+
+    /** Returns the position after the {@code K} or {@code V} item that starts at the position. */
+    private static int skipValue( String contents, int position ) {
+        String value = readValue( contents, position );
+        return value == null ? contents.length() : contents.indexOf( '\n', position ) + 1 + value.length() + 1;
+    }
+
+
+    /** A directory to read together with the depth of nodes below it. */
+    private static final class Directory {
+
+        private final File path;
+
+        private final SVNDepth depth;
+
+
+        private Directory( File path, SVNDepth depth ) {
+            this.path = path;
+            this.depth = depth;
+        }
+
+    }
+
+    /** The metadata read from the {@code entries} file of a single directory. */
+    private static final class DirectoryMetadata {
+
+        private final StatusAggregate aggregate = new StatusAggregate();
+
+        private final List<Directory> subdirectories = new ArrayList<Directory>();
+
+        private WcDbReader.Location location;
+
+    }
+
+}
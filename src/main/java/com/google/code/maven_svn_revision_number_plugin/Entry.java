@@ -27,6 +27,7 @@
 package com.google.code.maven_svn_revision_number_plugin;
 
 import java.io.File;
+import java.util.Arrays;
 
 /** Describes a file or a directory to be inspected. */
 public class Entry {
@@ -49,6 +50,33 @@ public class Entry {
     /** Specifies whether to check the remote repository and report local out-of-date items. */
     private boolean reportOutOfDate = false;
 
+    /** Specifies whether to read the revision metadata directly from the working copy database or the entries files. */
+    private boolean readWcDb = false;
+
+    /** Specifies whether to scan the external working copies separately and report their status. */
+    private boolean scanExternals = false;
+
+    /** Specifies how the local text modifications of files in 1.7+ working copies are detected. */
+    private String modificationCheck = ModificationCheckContext.CONTENT;
+
+    /** Specifies how the remote repository is checked for the out-of-date items. */
+    private String outOfDateCheck = RemoteStatusBatch.STATUS;
+
+    /** Specifies the names of the output properties that should be set, {@code null} if all of them should be set. */
+    private String[] properties;
+
+    /** Specifies the backend that reads the local status of the working copy. */
+    private String backend = StatusBackend.SVNKIT;
+
+    /** Specifies the glob patterns of the nodes that should be included, relative to the entry path. */
+    private String[] includes;
+
+    /** Specifies the glob patterns of the nodes that should be excluded, relative to the entry path. */
+    private String[] excludes;
+
+    /** Whether the local changes are compared with the last build, set from the {@code trackChanges} goal parameter. */
+    private boolean trackChanges;
+
 
     /** Creates a new {@code Entry} object with the default parameters. */
     public Entry() {
@@ -138,4 +166,145 @@ public class Entry {
         return reportOutOfDate;
     }
 
+    /**
+     * Specifies whether to read the revision metadata directly from the working copy database of 1.7+ working copies or
+     * from the {@code .svn/entries} files of 1.4-1.6 working copies.
+     *
+     * @return {@code true} if the working copy metadata should be read directly
+     */
+    public boolean readWcDb() {
+        return readWcDb;
+    }
+
+    /**
+     * Specifies whether to scan the external working copies separately, add their status to the status of this entry
+     * and report the status of each external with its own properties.
+     *
+     * @return {@code true} if the externals should be scanned separately
+     */
+    public boolean scanExternals() {
+        return scanExternals;
+    }
+
+    /**
+     * Specifies how the local text modifications of files in 1.7+ working copies are detected.
+     *
+     * @return the modification check, one of {@code content}, {@code timestamp}, {@code size} or {@code hybrid}
+     */
+    public String getModificationCheck() {
+        return modificationCheck;
+    }
+
+    /**
+     * Specifies how the remote repository is checked for the out-of-date items.
+     *
+     * @return the out-of-date check, either {@code status} or {@code head}
+     */
+    public String getOutOfDateCheck() {
+        return outOfDateCheck;
+    }
+
+    /**
+     * Specifies the names of the output properties that should be set.
+     *
+     * @return the property names without the prefix, or {@code null} if all the properties should be set
+     */
+    public String[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * Specifies the glob patterns of the nodes that should be included, only the selected nodes contribute to the entry
+     * properties.
+     *
+     * @return the include patterns, or {@code null} if all the nodes should be included
+     */
+    public String[] getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Specifies the glob patterns of the nodes that should be excluded. The excluded directories named without
+     * wildcards are not walked, the versioned directories matched only by wildcards are walked and filtered.
+     *
+     * @return the exclude patterns, or {@code null} if no nodes should be excluded
+     */
+    public String[] getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Specifies the backend that reads the local status of the working copy.
+     *
+     * @return the backend, either {@code svnkit} or {@code svn}
+     */
+    public String getBackend() {
+        return backend;
+    }
+
+    /**
+     * Checks whether the local changes of the entry are compared with the state recorded at the last build, only then
+     * the status walk has to hash the nodes with local changes.
+     *
+     * @return {@code true} if the local changes are tracked
+     */
+    boolean tracksChanges() {
+        return trackChanges;
+    }
+
+    void setTrackChanges( boolean trackChanges ) {
+        this.trackChanges = trackChanges;
+    }
+
+    /**
+     * Checks whether any of the specified output properties should be set for the entry.
+     *
+     * @param names the property names without the prefix
+     *
+     * @return {@code true} if at least one of the properties should be set
+     */
+    boolean isPropertyRequested( String... names ) {
+        if ( properties == null ) {
+            return true;
+        }
+        for ( String name : names ) {
+            if ( Arrays.asList( properties ).contains( name ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the entry has any include or exclude patterns.
+     *
+     * @return {@code true} if some nodes of the entry may be filtered out
+     */
+    boolean hasPathFilter() {
+        return PathFilter.create( includes, excludes ) != null;
+    }
+
+
+    /**
+     * Creates the entry for an external working copy found below this entry. The external entry has the same status
+     * options as this entry but does not check the remote repository.
+     *
+     * @param externalPath the path of the external working copy
+     * @param name the name of the external in the property names
+     *
+     * @return the external entry
+     */
+    Entry createExternalEntry( File externalPath, String name ) {
+        Entry externalEntry = new Entry( externalPath, prefix + ".externals." + name );
+        externalEntry.depth = depth;
+        externalEntry.reportUnversioned = reportUnversioned;
+        externalEntry.reportIgnored = reportIgnored;
+        externalEntry.scanExternals = true;
+        externalEntry.modificationCheck = modificationCheck;
+        externalEntry.backend = backend;
+        externalEntry.properties = properties;
+        externalEntry.trackChanges = trackChanges;
+        return externalEntry;
+    }
+
 }
@@ -0,0 +1,242 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.svn.core.ISVNCanceller;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.wc.ISVNRepositoryPool;
+import org.tmatesoft.svn.util.ISVNDebugLog;
+
+/**
+ * Collects the cost of inspecting a single entry: the time spent in each phase and the amount of work done by the
+ * working copy walk.
+ * <p/>
+ * The counters can be updated from several threads.
+ */
+final class EntryMetrics {
+
+    /** The number of entries whose peak heap usage is being measured. */
+    private static final AtomicInteger MEASURED_ENTRIES = new AtomicInteger();
+
+
+    private final AtomicLong totalTime = new AtomicLong();
+
+    private final AtomicLong generationTime = new AtomicLong();
+
+    private final AtomicLong statusTime = new AtomicLong();
+
+    private final AtomicLong infoTime = new AtomicLong();
+
+    private final AtomicLong remoteTime = new AtomicLong();
+
+    private final AtomicLong nodes = new AtomicLong();
+
+    private final AtomicLong excludedNodes = new AtomicLong();
+
+    private final AtomicLong contentComparisons = new AtomicLong();
+
+    private final AtomicLong sharedScans = new AtomicLong();
+
+    private final AtomicLong remoteSessions = new AtomicLong();
+
+    private final AtomicLong peakHeap = new AtomicLong();
+
+
+    void addTotalTime( long nanos ) {
+        totalTime.addAndGet( nanos );
+    }
+
+    void addGenerationTime( long nanos ) {
+        generationTime.addAndGet( nanos );
+    }
+
+    void addStatusTime( long nanos ) {
+        statusTime.addAndGet( nanos );
+    }
+
+    void addInfoTime( long nanos ) {
+        infoTime.addAndGet( nanos );
+    }
+
+    void addRemoteTime( long nanos ) {
+        remoteTime.addAndGet( nanos );
+    }
+
+    void addNodes( long count ) {
+        nodes.addAndGet( count );
+    }
+
+    void addExcludedNode() {
+        excludedNodes.incrementAndGet();
+    }
+
+    /**
+     * Returns the counter of the files whose contents were compared with the pristine copies.
+     *
+     * @return the content comparisons counter
+     */
+    AtomicLong getContentComparisons() {
+        return contentComparisons;
+    }
+
+    /**
+     * Returns the counter of the shared working copy scans performed for this entry.
+     *
+     * @return the shared scans counter
+     */
+    AtomicLong getSharedScans() {
+        return sharedScans;
+    }
+
+    /**
+     * Returns the repository pool that counts the sessions opened to the remote repository by this entry.
+     *
+     * @param repositoryPool the repository pool that actually opens the sessions
+     *
+     * @return the counting repository pool
+     */
+    ISVNRepositoryPool countRemoteSessions( ISVNRepositoryPool repositoryPool ) {
+        return new CountingRepositoryPool( repositoryPool, remoteSessions );
+    }
+
+
+    /**
+     * Starts measuring the peak heap usage of the JVM for this entry.
+     * <p/>
+     * The peak usage of the heap memory pools is JVM-wide, so it is reset only if no other entry is being measured at
+     * the moment. The entries inspected at the same time share the peak since the earliest of them started.
+     */
+    void startPeakHeap() {
+        synchronized ( MEASURED_ENTRIES ) {
+            if ( MEASURED_ENTRIES.getAndIncrement() == 0 ) {
+                for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+                    if ( MemoryType.HEAP.equals( pool.getType() ) ) {
+                        pool.resetPeakUsage();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the peak heap usage of the JVM since the measurement was started. The peaks of the pools are summed up,
+     * which is the upper bound of the actual peak. The usage includes everything else that runs in the same JVM.
+     */
+    void measurePeakHeap() {
+        synchronized ( MEASURED_ENTRIES ) {
+            long used = 0L;
+            for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+                if ( MemoryType.HEAP.equals( pool.getType() ) && pool.getPeakUsage() != null ) {
+                    used += pool.getPeakUsage().getUsed();
+                }
+            }
+            peakHeap.set( used );
+            MEASURED_ENTRIES.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * Returns the metrics in the form of the entry output properties. The times are in milliseconds.
+     *
+     * @return the metrics properties
+     */
+    Map<String, Object> createProperties() {
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "metrics.totalTime", toMillis( totalTime ) );
+        properties.put( "metrics.generationTime", toMillis( generationTime ) );
+        properties.put( "metrics.statusTime", toMillis( statusTime ) );
+        properties.put( "metrics.infoTime", toMillis( infoTime ) );
+        properties.put( "metrics.remoteTime", toMillis( remoteTime ) );
+        properties.put( "metrics.nodes", nodes.get() );
+        properties.put( "metrics.excludedNodes", excludedNodes.get() );
+        properties.put( "metrics.contentComparisons", contentComparisons.get() );
+        properties.put( "metrics.sharedScans", sharedScans.get() );
+        properties.put( "metrics.remoteSessions", remoteSessions.get() );
+        properties.put( "metrics.peakHeap", peakHeap.get() );
+        return properties;
+    }
+
+    private static long toMillis( AtomicLong nanos ) {
+        return nanos.get() / 1000000L;
+    }
+
+
+    /** Delegates to another pool and counts the created repository sessions. */
+    private static final class CountingRepositoryPool implements ISVNRepositoryPool {
+
+        private final ISVNRepositoryPool delegate;
+
+        private final AtomicLong sessions;
+
+
+        private CountingRepositoryPool( ISVNRepositoryPool delegate, AtomicLong sessions ) {
+            this.delegate = delegate;
+            this.sessions = sessions;
+        }
+
+
+        public SVNRepository createRepository( SVNURL url, boolean mayReuse ) throws SVNException {
+            sessions.incrementAndGet();
+            return delegate.createRepository( url, mayReuse );
+        }
+
+        public void setAuthenticationManager( ISVNAuthenticationManager authenticationManager ) {
+            delegate.setAuthenticationManager( authenticationManager );
+        }
+
+        public void setCanceller( ISVNCanceller canceller ) {
+            delegate.setCanceller( canceller );
+        }
+
+        public void setDebugLog( ISVNDebugLog log ) {
+            delegate.setDebugLog( log );
+        }
+
+        @SuppressWarnings( "deprecation" )
+        public void shutdownConnections( boolean shutdownAll ) {
+            delegate.shutdownConnections( shutdownAll );
+        }
+
+        public void dispose() {
+            delegate.dispose();
+        }
+
+    }
+
+}
@@ -0,0 +1,621 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+
+/**
+ * Stores the entry status between builds.
+ * <p/>
+ * Each stored record is keyed by a fingerprint that consists of the entry configuration, the size and modification
+ * time of the working copy metadata ({@code .svn/wc.db} or {@code .svn/entries}) and the stamps of the layout recorded
+ * by the status walk. The layout lists the versioned directories, whose item names and {@code .svn/entries} files are
+ * compared, the items that were reported as modified, unversioned, missing and so on, whose sizes and modification
+ * times are compared, and the roots of the external working copies, whose metadata is compared. The files that had no
+ * local modifications are not checked, so editing such a file is noticed only when the working copy metadata changes.
+ * The status of every item immediately below the entry directory is stored separately, so if only some of those items
+ * change then only they have to be inspected again.
+ */
+final class EntryResultCache {
+
+    private static final String FORMAT = "3";
+
+    /** The layout kind of a versioned directory whose item names are compared. */
+    static final char DIRECTORY = 'd';
+
+    /** The layout kind of a locally changed file whose size and modification time are compared. */
+    static final char CHANGED_FILE = 'm';
+
+    /** The layout kind of an unversioned, ignored, missing or obstructed item whose existence is compared. */
+    static final char EXISTENCE = 'e';
+
+    /** The layout kind of the root of an external working copy whose metadata is compared. */
+    static final char EXTERNAL = 'x';
+
+    private final File directory;
+
+
+    /**
+     * Creates a new {@code EntryResultCache} object that stores records in the specified directory.
+     *
+     * @param directory the cache directory
+     */
+    EntryResultCache( File directory ) {
+        if ( directory == null ) {
+            throw new IllegalArgumentException( "{directory} is null" );
+        }
+        this.directory = directory;
+    }
+
+
+    /**
+     * Loads the stored record of the entry.
+     *
+     * @param entry the entry
+     *
+     * @return the stored record, or {@code null} if there is no valid record
+     */
+    Record load( Entry entry ) {
+        File file = getRecordFile( entry );
+        if ( !file.isFile() ) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream input = new FileInputStream( file );
+            try {
+                properties.load( input );
+            } finally {
+                input.close();
+            }
+            return FORMAT.equals( properties.getProperty( "format" ) ) ? new Record( properties ) : null;
+        } catch ( IOException e ) {
+            return null;
+        } catch ( IllegalArgumentException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the record of the entry, replacing the previous one.
+     *
+     * @param entry the entry
+     * @param record the record to store
+     *
+     * @throws IOException if the record can not be written
+     */
+    void store( Entry entry, Record record ) throws IOException {
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException( "unable to create " + directory );
+        }
+        File file = getRecordFile( entry );
+        File temporaryFile = File.createTempFile( file.getName(), ".tmp", directory );
+        OutputStream output = new FileOutputStream( temporaryFile );
+        try {
+            record.properties.store( output, null );
+        } finally {
+            output.close();
+        }
+        if ( !temporaryFile.renameTo( file ) ) {
+            file.delete();
+            if ( !temporaryFile.renameTo( file ) ) {
+                temporaryFile.delete();
+                throw new IOException( "unable to replace " + file );
+            }
+        }
+    }
+
+    /**
+     * Computes the current fingerprint of the entry.
+     *
+     * @param entry the entry
+     * @param previous the previously stored record whose layout is checked, or {@code null}
+     *
+     * @return the fingerprint, or {@code null} if the entry is not inside a working copy
+     */
+    static Fingerprint fingerprint( Entry entry, Record previous ) {
+        File path = entry.getPath().getAbsoluteFile();
+        String metadata = getMetadataStamp( path );
+        if ( metadata == null ) {
+            return null;
+        }
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.config = getConfig( entry );
+        fingerprint.metadata = metadata;
+        if ( path.isDirectory() ) {
+            fingerprint.self = "dir";
+            StringBuilder nameList = new StringBuilder();
+            for ( String name : listItemNames( path ) ) {
+                nameList.append( name ).append( '/' );
+                String layout = previous != null ? previous.getChildLayout( name ) : null;
+                fingerprint.children.put( name, layout != null ? getLayoutStamp( path, layout ) : null );
+            }
+            fingerprint.names = nameList.toString();
+        } else {
+            fingerprint.self = path.exists() ? path.length() + "@" + path.lastModified() : "none";
+            fingerprint.names = "";
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Computes the current fingerprint of the entry directory assuming that the layout of every item is still the
+     * stored one, which is known when all the directories of the layout are watched and no change was seen in them.
+     * Only the working copy metadata and the item names of the entry directory are checked. The assumption does not
+     * cover the {@code .svn/entries} files of the subdirectories and the metadata of the externals, which are not
+     * watched, so such records are not supported.
+     *
+     * @param entry the entry
+     * @param record the stored record
+     *
+     * @return the fingerprint, or {@code null} if the record is not supported and the layout has to be checked
+     */
+    static Fingerprint fingerprintUnchanged( Entry entry, Record record ) {
+        File path = entry.getPath().getAbsoluteFile();
+        if ( !"dir".equals( record.properties.getProperty( "self" ) ) || !path.isDirectory() ) {
+            return null;
+        }
+        String metadata = getMetadataStamp( path );
+        if ( metadata == null || !metadata.startsWith( "wc.db:" ) ) {
+            return null;
+        }
+        for ( Object key : record.properties.keySet() ) {
+            String name = (String) key;
+            if ( name.startsWith( "child." ) && name.endsWith( ".layout" ) ) {
+                for ( String item : record.properties.getProperty( name ).split( "\n" ) ) {
+                    if ( item.length() > 0 && item.charAt( 0 ) == EXTERNAL ) {
+                        return null;
+                    }
+                }
+            }
+        }
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.config = getConfig( entry );
+        fingerprint.metadata = metadata;
+        fingerprint.self = "dir";
+        StringBuilder nameList = new StringBuilder();
+        for ( String name : listItemNames( path ) ) {
+            nameList.append( name ).append( '/' );
+            fingerprint.children.put( name, record.getChildStamp( name ) );
+        }
+        fingerprint.names = nameList.toString();
+        return fingerprint;
+    }
+
+    /** Returns the sorted names of the items in the directory except the working copy administrative directory. */
+    private static List<String> listItemNames( File path ) {
+        String[] names = path.list();
+        List<String> itemNames = new ArrayList<String>( names == null ? 0 : names.length );
+        if ( names != null ) {
+            Arrays.sort( names );
+            for ( String name : names ) {
+                if ( !".svn".equals( name ) ) {
+                    itemNames.add( name );
+                }
+            }
+        }
+        return itemNames;
+    }
+
+
+    /**
+     * Returns the entry configuration that affects the stored status.
+     *
+     * @param entry the entry
+     *
+     * @return the configuration string
+     */
+    static String getConfig( Entry entry ) {
+        return "depth=" + entry.getDepth() + ";unversioned=" + entry.reportUnversioned()
+                + ";ignored=" + entry.reportIgnored() + ";wcdb=" + entry.readWcDb() + ";modificationCheck=" + entry.getModificationCheck()
+                + ";backend=" + entry.getBackend() + ";filter=" + PathFilter.create( entry.getIncludes(), entry.getExcludes() )
+                + ";changes=" + entry.tracksChanges() + ";path=" + entry.getPath().getAbsoluteFile();
+    }
+
+    private File getRecordFile( Entry entry ) {
+        return new File( directory, "entry-" + digest( entry.getPrefix() + '\u0000' + entry.getPath().getAbsolutePath() ) + ".properties" );
+    }
+
+    private static String getMetadataStamp( File path ) {
+        File entryDirectory = path.isDirectory() ? path : path.getParentFile();
+        for ( File current = entryDirectory; current != null; current = current.getParentFile() ) {
+            File wcDb = new File( current, ".svn/wc.db" );
+            if ( wcDb.isFile() ) {
+                return "wc.db:" + wcDb.length() + "@" + wcDb.lastModified();
+            }
+            File entries = new File( current, ".svn/entries" );
+            if ( current.equals( entryDirectory ) && entries.isFile() ) {
+                return "entries:" + entries.length() + "@" + entries.lastModified();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the layout kind of the reported node, that is which part of the node state has to be compared to notice a
+     * change of its status.
+     *
+     * @param file the node path
+     * @param status the node status
+     *
+     * @return the layout kind, or {@code 0} if the node does not have to be checked
+     */
+    static char getLayoutKind( File file, SvnStatus status ) {
+        SVNStatusType nodeStatus = status.getNodeStatus();
+        if ( SVNStatusType.STATUS_EXTERNAL.equals( nodeStatus ) ) {
+            return EXTERNAL;
+        }
+        if ( SVNStatusType.STATUS_UNVERSIONED.equals( nodeStatus ) || SVNStatusType.STATUS_IGNORED.equals( nodeStatus )
+                || SVNStatusType.STATUS_MISSING.equals( nodeStatus ) || SVNStatusType.STATUS_OBSTRUCTED.equals( nodeStatus )
+                || SVNStatusType.STATUS_NONE.equals( nodeStatus ) ) {
+            return EXISTENCE;
+        }
+        SVNNodeKind kind = status.getKind();
+        boolean directory = SVNNodeKind.DIR.equals( kind ) || SVNNodeKind.FILE.equals( kind ) ? SVNNodeKind.DIR.equals( kind ) : file.isDirectory();
+        if ( directory ) {
+            return DIRECTORY;
+        }
+        return SVNStatusType.STATUS_NORMAL.equals( nodeStatus ) ? 0 : CHANGED_FILE;
+    }
+
+    /**
+     * Computes the stamp of the recorded layout.
+     *
+     * @param path the entry path
+     * @param layout the layout items separated by new lines, each item is the layout kind followed by the item path
+     * relative to the entry path
+     *
+     * @return the layout stamp
+     */
+    static String getLayoutStamp( File path, String layout ) {
+        MessageDigest digest = createDigest();
+        if ( layout.length() > 0 ) {
+            for ( String item : layout.split( "\n" ) ) {
+                update( digest, item );
+                update( digest, getItemStamp( item.charAt( 0 ), new File( path, item.substring( 1 ) ) ) );
+            }
+        }
+        return toHex( digest.digest() );
+    }
+
+    private static String getItemStamp( char kind, File file ) {
+        switch ( kind ) {
+            case DIRECTORY:
+                String[] names = file.list();
+                if ( names == null ) {
+                    return file.exists() ? "file" : "none";
+                }
+                Arrays.sort( names );
+                StringBuilder stamp = new StringBuilder();
+                for ( String name : names ) {
+                    if ( !".svn".equals( name ) ) {
+                        stamp.append( name ).append( '/' );
+                    }
+                }
+                File entries = new File( file, ".svn/entries" );
+                if ( entries.isFile() ) {
+                    stamp.append( "entries:" ).append( entries.length() ).append( '@' ).append( entries.lastModified() );
+                }
+                return stamp.toString();
+            case CHANGED_FILE:
+                return file.exists() ? file.length() + "@" + file.lastModified() : "none";
+            case EXTERNAL:
+                File wcDb = new File( file, ".svn/wc.db" );
+                if ( wcDb.isFile() ) {
+                    return "wc.db:" + wcDb.length() + "@" + wcDb.lastModified();
+                }
+                File externalEntries = new File( file, ".svn/entries" );
+                return externalEntries.isFile() ? "entries:" + externalEntries.length() + "@" + externalEntries.lastModified() : "none";
+            default:
+                return file.isDirectory() ? "dir" : file.exists() ? "file" : "none";
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance( "MD5" );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static void update( MessageDigest digest, String value ) {
+        try {
+            digest.update( value.getBytes( "UTF-8" ) );
+            digest.update( (byte) 0 );
+        } catch ( UnsupportedEncodingException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    static String digest( String value ) {
+        MessageDigest digest = createDigest();
+        update( digest, value );
+        return toHex( digest.digest() );
+    }
+
+    private static String toHex( byte[] bytes ) {
+        StringBuilder hex = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes ) {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return hex.toString();
+    }
+
+
+    /** The current state of the entry on disk. */
+    static final class Fingerprint {
+
+        private String config;
+
+        private String metadata;
+
+        private String self;
+
+        private String names;
+
+        private final Map<String, String> children = new LinkedHashMap<String, String>();
+
+
+        private Fingerprint() {
+        }
+
+
+        /**
+         * Returns the names of the items immediately below the entry directory.
+         *
+         * @return the item names
+         */
+        Set<String> getChildren() {
+            return Collections.unmodifiableSet( children.keySet() );
+        }
+
+        /**
+         * Marks the specified item as changed regardless of its layout stamp.
+         *
+         * @param name the item name
+         */
+        void markChanged( String name ) {
+            if ( children.containsKey( name ) ) {
+                children.put( name, null );
+            }
+        }
+
+    }
+
+    /** The stored status of the entry. */
+    static final class Record {
+
+        private final Properties properties;
+
+
+        private Record( Properties properties ) {
+            this.properties = properties;
+            getAggregate();
+        }
+
+        /**
+         * Creates a new record for the specified fingerprint.
+         *
+         * @param fingerprint the fingerprint the status was calculated for
+         * @param repositoryRoot the repository root
+         * @param repositoryPath the entry path relative to the repository root
+         * @param aggregate the entry status
+         */
+        Record( Fingerprint fingerprint, String repositoryRoot, String repositoryPath, StatusAggregate aggregate ) {
+            properties = new Properties();
+            properties.setProperty( "format", FORMAT );
+            properties.setProperty( "config", fingerprint.config );
+            properties.setProperty( "metadata", fingerprint.metadata );
+            properties.setProperty( "self", fingerprint.self );
+            properties.setProperty( "names", fingerprint.names );
+            properties.setProperty( "repository", repositoryRoot == null ? "" : repositoryRoot );
+            properties.setProperty( "path", repositoryPath == null ? "" : repositoryPath );
+            properties.setProperty( "aggregate", aggregate.toExternalForm() );
+            properties.setProperty( "incremental", "false" );
+        }
+
+
+        /**
+         * Stores the status and the layout of the entry itself and of the items below it. The layout stamps are
+         * computed now, after the status walk that recorded the layout.
+         *
+         * @param path the entry path
+         * @param fingerprint the fingerprint the status was calculated for
+         * @param self the status of the entry itself
+         * @param children the aggregated statuses of the items below the entry, keyed by the item name
+         * @param layouts the layouts of the items below the entry, keyed by the item name
+         * @param incremental whether the stored children statuses can be combined with fresh statuses of the changed
+         * children
+         */
+        void setChildren( File path, Fingerprint fingerprint, StatusAggregate self, Map<String, StatusAggregate> children, Map<String, StringBuilder> layouts, boolean incremental ) {
+            properties.setProperty( "incremental", String.valueOf( incremental ) );
+            properties.setProperty( "self.aggregate", self.toExternalForm() );
+            for ( String name : fingerprint.children.keySet() ) {
+                StringBuilder layout = layouts.get( name );
+                String layoutString = layout == null ? "" : layout.toString();
+                properties.setProperty( "child." + name + ".layout", layoutString );
+                properties.setProperty( "child." + name + ".stamp", getLayoutStamp( path, layoutString ) );
+                StatusAggregate childAggregate = children.get( name );
+                if ( childAggregate != null ) {
+                    properties.setProperty( "child." + name + ".aggregate", childAggregate.toExternalForm() );
+                }
+            }
+        }
+
+        /**
+         * Checks whether the entry configuration, the working copy metadata and the set of items below the entry are
+         * the same as when this record was stored.
+         *
+         * @param fingerprint the current fingerprint
+         *
+         * @return {@code true} if the record can be used at least partially
+         */
+        boolean matches( Fingerprint fingerprint ) {
+            return fingerprint.config.equals( properties.getProperty( "config" ) )
+                    && fingerprint.metadata.equals( properties.getProperty( "metadata" ) )
+                    && fingerprint.self.equals( properties.getProperty( "self" ) )
+                    && fingerprint.names.equals( properties.getProperty( "names" ) );
+        }
+
+        /**
+         * Checks whether the record matches the fingerprint and none of the items below the entry changed, that is
+         * whether the whole stored status is still valid.
+         *
+         * @param fingerprint the current fingerprint
+         *
+         * @return {@code true} if the record is still valid
+         */
+        boolean isUnchanged( Fingerprint fingerprint ) {
+            if ( !matches( fingerprint ) ) {
+                return false;
+            }
+            for ( String name : fingerprint.getChildren() ) {
+                if ( !isChildUnchanged( fingerprint, name ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether the stored children statuses can be combined with fresh statuses of the changed children.
+         *
+         * @return {@code true} if the record is usable for incremental updates
+         */
+        boolean isIncremental() {
+            return Boolean.parseBoolean( properties.getProperty( "incremental" ) );
+        }
+
+        /**
+         * Checks whether the stored status of the specified item is still valid.
+         *
+         * @param fingerprint the current fingerprint
+         * @param name the item name
+         *
+         * @return {@code true} if the item did not change
+         */
+        boolean isChildUnchanged( Fingerprint fingerprint, String name ) {
+            String stamp = fingerprint.children.get( name );
+            return stamp != null && stamp.equals( getChildStamp( name ) );
+        }
+
+        String getRepositoryRoot() {
+            return properties.getProperty( "repository" );
+        }
+
+        String getRepositoryPath() {
+            return properties.getProperty( "path" );
+        }
+
+        StatusAggregate getAggregate() {
+            return StatusAggregate.fromExternalForm( properties.getProperty( "aggregate", "" ) );
+        }
+
+        StatusAggregate getSelfAggregate() {
+            return StatusAggregate.fromExternalForm( properties.getProperty( "self.aggregate", "" ) );
+        }
+
+        /**
+         * Returns the stored status of the specified item.
+         *
+         * @param name the item name
+         *
+         * @return the item status, or {@code null} if no statuses were reported for the item
+         */
+        StatusAggregate getChildAggregate( String name ) {
+            String externalForm = properties.getProperty( "child." + name + ".aggregate" );
+            return externalForm == null ? null : StatusAggregate.fromExternalForm( externalForm );
+        }
+
+        /**
+         * Returns the stored layout of the specified item.
+         *
+         * @param name the item name
+         *
+         * @return the item layout, or {@code null} if no layout was stored for the item
+         */
+        String getChildLayout( String name ) {
+            return properties.getProperty( "child." + name + ".layout" );
+        }
+
+        /**
+         * Returns the entry directory and the versioned directories of the stored layout.
+         *
+         * @param path the entry path
+         *
+         * @return the directories, empty if the entry is not a directory
+         */
+        List<File> getDirectories( File path ) {
+            List<File> directories = new ArrayList<File>();
+            if ( !"dir".equals( properties.getProperty( "self" ) ) ) {
+                return directories;
+            }
+            directories.add( path.getAbsoluteFile() );
+            for ( Object key : properties.keySet() ) {
+                String name = (String) key;
+                if ( name.startsWith( "child." ) && name.endsWith( ".layout" ) ) {
+                    String layout = properties.getProperty( name );
+                    if ( layout.length() > 0 ) {
+                        for ( String item : layout.split( "\n" ) ) {
+                            if ( item.charAt( 0 ) == DIRECTORY ) {
+                                directories.add( new File( path, item.substring( 1 ) ).getAbsoluteFile() );
+                            }
+                        }
+                    }
+                }
+            }
+            return directories;
+        }
+
+        private String getChildStamp( String name ) {
+            return properties.getProperty( "child." + name + ".stamp" );
+        }
+
+    }
+
+}
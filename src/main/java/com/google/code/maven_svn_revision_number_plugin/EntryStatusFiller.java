@@ -0,0 +1,277 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.maven.execution.MavenSession;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
+import org.tmatesoft.svn.core.wc2.SvnInfo;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Fills the status handler of an entry by the strategy that fits the entry configuration.
+ * <p/>
+ * The status is restored from the result cache or from the watched state, taken from the shared scan of the working
+ * copy or from the working copy metadata, or collected by a status walk that is pruned at the excluded directories or
+ * split between the subdirectories of the entry. The externals are scanned after the entry itself.
+ */
+final class EntryStatusFiller {
+
+    private final DebugLog debugLog;
+
+    private final String svnExecutable;
+
+    /** Restores the status from the stored results, {@code null} if the results are neither cached nor watched. */
+    private final ResultCacheFiller resultCacheFiller;
+
+    /** Takes the status from the shared scans of the working copies, {@code null} if the scans are not shared. */
+    private final SharedScanFiller sharedScanFiller;
+
+    /** Scans the subdirectories of the entries concurrently, {@code null} if every entry is scanned by one thread. */
+    private final ConcurrentStatusFiller concurrentStatusFiller;
+
+    /** Walks the entries with include or exclude patterns. */
+    private final PrunedStatusFiller prunedStatusFiller;
+
+    /** Reads the revisions from the working copy metadata. */
+    private final MetadataFiller metadataFiller;
+
+    /** Scans the externals of the entries. */
+    private final ExternalsFiller externalsFiller;
+
+
+    /**
+     * Creates a new {@code EntryStatusFiller} object.
+     *
+     * @param debugLog the log of the diagnostic messages
+     * @param svnExecutable the native Subversion client used by the entries with the {@code svn} backend
+     * @param scanThreads the number of threads used to scan the working copy below a single entry
+     * @param session the build session whose shared scans should be used, or {@code null} if the scans are not shared
+     * @param cacheDirectory the directory of the result cache, or {@code null} if the results are not cached
+     * @param watch whether the entry statuses are kept in memory and watched for changes
+     */
+    EntryStatusFiller( DebugLog debugLog, String svnExecutable, int scanThreads, MavenSession session, File cacheDirectory, boolean watch ) {
+        if ( debugLog == null ) {
+            throw new IllegalArgumentException( "{debugLog} is null" );
+        }
+        this.debugLog = debugLog;
+        this.svnExecutable = svnExecutable;
+        resultCacheFiller = cacheDirectory != null || watch ? new ResultCacheFiller( this, cacheDirectory, watch ) : null;
+        sharedScanFiller = session != null ? new SharedScanFiller( this, session ) : null;
+        concurrentStatusFiller = scanThreads > 1 ? new ConcurrentStatusFiller( this, scanThreads ) : null;
+        prunedStatusFiller = new PrunedStatusFiller( this );
+        metadataFiller = new MetadataFiller( debugLog, Math.max( scanThreads, Runtime.getRuntime().availableProcessors() ) );
+        externalsFiller = new ExternalsFiller( this, scanThreads );
+    }
+
+
+    DebugLog getDebugLog() {
+        return debugLog;
+    }
+
+    /**
+     * Fills the status of the entry and of its externals.
+     *
+     * @param entry the entry to inspect
+     * @param operationFactory the operation factory that detects the local modifications of the entry
+     * @param statusHandler the status handler of the entry
+     * @param revisionsOnly whether only the revisions and the repository location of the entry are requested
+     *
+     * @throws SVNException if the working copy could not be read
+     */
+    void fill( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler, boolean revisionsOnly ) throws SVNException {
+        if ( revisionsOnly ) {
+            fillRevisionsAndInfo( entry, operationFactory, statusHandler );
+        } else if ( resultCacheFiller == null || !resultCacheFiller.fill( entry, operationFactory, statusHandler ) ) {
+            fillStatusAndInfo( entry, operationFactory, statusHandler );
+        }
+        if ( entry.scanExternals() ) {
+            externalsFiller.fill( entry, operationFactory, statusHandler, revisionsOnly );
+        }
+    }
+
+    /**
+     * Inspects the entry without the stored results.
+     *
+     * @return {@code true} if the entry was walked by a status walk that reported every node
+     */
+    boolean fillStatusAndInfo( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler ) throws SVNException {
+        long startTime = System.nanoTime();
+        SvnWcGeneration wcGeneration = SvnOperationFactory.detectWcGeneration( entry.getPath(), true );
+        statusHandler.metrics.addGenerationTime( System.nanoTime() - startTime );
+        debugLog.info( format( "  wc format = %s", wcGeneration ) );
+        startTime = System.nanoTime();
+        boolean walked = false;
+        // the layout of the result cache is recorded only by a walk that reports every node
+        boolean layoutTracked = statusHandler.layouts != null;
+        if ( layoutTracked || sharedScanFiller == null || !sharedScanFiller.fill( entry, operationFactory, statusHandler ) ) {
+            boolean metadataRead = !layoutTracked && entry.readWcDb() && !entry.hasPathFilter() && metadataFiller.fill( entry, wcGeneration, statusHandler );
+            fillStatus( entry, operationFactory, statusHandler, !metadataRead );
+            walked = !metadataRead;
+        }
+        statusHandler.metrics.addStatusTime( System.nanoTime() - startTime );
+        fillInfo( entry, operationFactory, statusHandler );
+        return walked;
+    }
+
+    /**
+     * Fills only the revisions and the repository location of the entry, which do not depend on the local
+     * modifications. The revisions are read from the working copy database or from the {@code .svn/entries} files, or
+     * walked by {@link #fillRevisions} if the entry has path patterns or externals, and the file contents are never
+     * compared with the pristine copies.
+     */
+    private void fillRevisionsAndInfo( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler ) throws SVNException {
+        if ( entry.isPropertyRequested( "revision", "mixedRevisions", "committedRevision", "committedDate" ) ) {
+            long startTime = System.nanoTime();
+            SvnWcGeneration wcGeneration = SvnOperationFactory.detectWcGeneration( entry.getPath(), true );
+            statusHandler.metrics.addGenerationTime( System.nanoTime() - startTime );
+            debugLog.info( format( "  wc format = %s", wcGeneration ) );
+            startTime = System.nanoTime();
+            if ( entry.hasPathFilter() || entry.scanExternals() || !metadataFiller.fill( entry, wcGeneration, statusHandler ) ) {
+                fillRevisions( entry, wcGeneration, statusHandler );
+            }
+            statusHandler.metrics.addStatusTime( System.nanoTime() - startTime );
+        }
+        fillInfo( entry, operationFactory, statusHandler );
+    }
+
+    /**
+     * Walks the entry for the revisions of its nodes. The 1.7+ working copy is walked by the status operation that
+     * treats a file as modified when its size or modification time differ. The status walk of the 1.6 working copy
+     * compares the contents of such files whatever the modification check is, and so does {@code svn status}, so that
+     * working copy is walked by the info operation that reads only the {@code .svn/entries} files whatever the backend
+     * is.
+     */
+    void fillRevisions( Entry entry, SvnWcGeneration wcGeneration, StatusHandler statusHandler ) throws SVNException {
+        SvnOperationFactory revisionOperationFactory = new SvnOperationFactory( new ModificationCheckContext( ModificationCheckContext.TIMESTAMP, statusHandler.metrics.getContentComparisons() ) );
+        try {
+            if ( SvnWcGeneration.V16.equals( wcGeneration ) ) {
+                metadataFiller.fillEntriesRevisions( entry, revisionOperationFactory, statusHandler );
+            } else {
+                fillStatus( entry, revisionOperationFactory, statusHandler, true );
+            }
+        } finally {
+            revisionOperationFactory.dispose();
+        }
+    }
+
+    private void fillStatus( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler, boolean reportAll ) throws SVNException {
+        if ( statusHandler.pathFilter != null && SVNDepth.INFINITY.equals( SVNDepth.fromString( entry.getDepth() ) ) && entry.getPath().isDirectory() ) {
+            prunedStatusFiller.fill( entry, operationFactory, statusHandler, reportAll );
+            return;
+        }
+        if ( concurrentStatusFiller != null && SVNDepth.INFINITY.equals( SVNDepth.fromString( entry.getDepth() ) ) && entry.getPath().isDirectory() ) {
+            concurrentStatusFiller.fill( entry, operationFactory, statusHandler, reportAll );
+            return;
+        }
+        createBackend( entry, operationFactory ).status( entry.getPath(), SVNDepth.fromString( entry.getDepth() ), reportAll, entry.reportIgnored(), !entry.scanExternals(), statusHandler );
+    }
+
+    void fillInfo( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler ) throws SVNException {
+        if ( statusHandler.repositoryPath == null || statusHandler.repositoryPath.length() == 0 ) {
+            long startTime = System.nanoTime();
+            SvnInfo infoResult = createBackend( entry, operationFactory ).info( entry.getPath() );
+            statusHandler.repositoryRoot = infoResult.getRepositoryRootUrl().toString();
+            statusHandler.repositoryPath = infoResult.getUrl().toString().substring( statusHandler.repositoryRoot.length() + 1 );
+            statusHandler.metrics.addInfoTime( System.nanoTime() - startTime );
+        }
+    }
+
+    /**
+     * Returns the backend that reads the local status of the entry, the svnkit backend is used if the {@code svn}
+     * executable is not available.
+     */
+    StatusBackend createBackend( Entry entry, SvnOperationFactory operationFactory ) {
+        if ( StatusBackend.SVN.equals( entry.getBackend() ) && SvnCommandBackend.isAvailable( svnExecutable ) ) {
+            return new SvnCommandBackend( svnExecutable );
+        }
+        return new SvnKitBackend( operationFactory );
+    }
+
+    boolean isSvnKitBackend( Entry entry ) {
+        return !StatusBackend.SVN.equals( entry.getBackend() ) || !SvnCommandBackend.isAvailable( svnExecutable );
+    }
+
+    /**
+     * Creates a new operation factory that detects the local modifications the same way as the specified factory.
+     *
+     * @param operationFactory the operation factory to copy
+     *
+     * @return the new operation factory
+     */
+    static SvnOperationFactory copyOperationFactory( SvnOperationFactory operationFactory ) {
+        if ( operationFactory.getWcContext() instanceof ModificationCheckContext ) {
+            return new SvnOperationFactory( ( (ModificationCheckContext) operationFactory.getWcContext() ).copy() );
+        } else {
+            return new SvnOperationFactory();
+        }
+    }
+
+    /**
+     * Checks whether the sequential scan would descend into the directory with the specified status. The directory
+     * itself is reported by the walk of its parent, so the walk of the directory skips it.
+     */
+    static boolean isScannedSeparately( SVNStatusType statusType ) {
+        return !SVNStatusType.STATUS_NONE.equals( statusType )
+                && !SVNStatusType.STATUS_UNVERSIONED.equals( statusType )
+                && !SVNStatusType.STATUS_IGNORED.equals( statusType )
+                && !SVNStatusType.STATUS_MISSING.equals( statusType )
+                && !SVNStatusType.STATUS_OBSTRUCTED.equals( statusType );
+    }
+
+    /** Waits for the result of the scan that runs on another thread and rethrows the failure of the scan. */
+    static <T> T waitForScan( Future<T> result ) throws SVNException {
+        try {
+            return result.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SVNCancelException();
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof SVNException ) {
+                throw (SVNException) cause;
+            } else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            } else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException( cause );
+            }
+        }
+    }
+
+}
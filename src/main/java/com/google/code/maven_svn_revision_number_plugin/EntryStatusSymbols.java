@@ -31,6 +31,30 @@ import org.tmatesoft.svn.core.wc.SVNStatusType;
 /** A mapping from the status type to the symbol that represents it. */
 class EntryStatusSymbols {
 
+    /** The status types that are represented in the status string, in the order they appear in it. */
+    static final SVNStatusType[] REPORTED_STATUS_TYPES = {
+            SVNStatusType.STATUS_ADDED,
+            SVNStatusType.STATUS_CONFLICTED,
+            SVNStatusType.STATUS_DELETED,
+            SVNStatusType.STATUS_IGNORED,
+            SVNStatusType.STATUS_MODIFIED,
+            SVNStatusType.STATUS_REPLACED,
+            SVNStatusType.STATUS_EXTERNAL,
+            SVNStatusType.STATUS_UNVERSIONED,
+            SVNStatusType.STATUS_MISSING,
+            SVNStatusType.STATUS_INCOMPLETE,
+            SVNStatusType.STATUS_OBSTRUCTED,
+    };
+
+    /** The {@link StatusAggregate#statusTypeBit(SVNStatusType) bits} of the {@link #REPORTED_STATUS_TYPES}. */
+    static final int[] REPORTED_STATUS_TYPE_BITS = new int[ REPORTED_STATUS_TYPES.length ];
+
+    static {
+        for ( int i = 0; i < REPORTED_STATUS_TYPES.length; i++ ) {
+            REPORTED_STATUS_TYPE_BITS[ i ] = StatusAggregate.statusTypeBit( REPORTED_STATUS_TYPES[ i ] );
+        }
+    }
+
     /** The default mapping that is consistent with the {@literal svn status} command output. */
     public static final EntryStatusSymbols DEFAULT = new EntryStatusSymbols();
 
@@ -58,6 +82,10 @@ class EntryStatusSymbols {
     };
 
 
+    /** The symbols of the {@link #REPORTED_STATUS_TYPES}, created on the first use. */
+    private volatile char[] reportedStatusSymbols;
+
+
     private EntryStatusSymbols() {
     }
 
@@ -70,4 +98,22 @@ class EntryStatusSymbols {
         return '*';
     }
 
+    /**
+     * Returns the symbols of the {@link #REPORTED_STATUS_TYPES}, the index in the returned array matches the index of
+     * the status type. The returned array must not be modified.
+     *
+     * @return the symbols of the reported status types
+     */
+    char[] getReportedStatusSymbols() {
+        char[] symbols = reportedStatusSymbols;
+        if ( symbols == null ) {
+            symbols = new char[ REPORTED_STATUS_TYPES.length ];
+            for ( int i = 0; i < REPORTED_STATUS_TYPES.length; i++ ) {
+                symbols[ i ] = getStatusSymbol( REPORTED_STATUS_TYPES[ i ] );
+            }
+            reportedStatusSymbols = symbols;
+        }
+        return symbols;
+    }
+
 }
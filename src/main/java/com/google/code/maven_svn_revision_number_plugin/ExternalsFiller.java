@@ -0,0 +1,137 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+
+import static java.lang.String.format;
+
+/** Scans the external working copies found by the walks of the entries that scan their externals separately. */
+final class ExternalsFiller {
+
+    private final EntryStatusFiller statusFiller;
+
+    private final DebugLog debugLog;
+
+    /** The number of threads that scan the externals, the number of processors is used if it is greater. */
+    private final int scanThreads;
+
+
+    /**
+     * Creates a new {@code ExternalsFiller} object.
+     *
+     * @param statusFiller the status filler that uses this strategy
+     * @param scanThreads the number of threads that scan the externals
+     */
+    ExternalsFiller( EntryStatusFiller statusFiller, int scanThreads ) {
+        if ( statusFiller == null ) {
+            throw new IllegalArgumentException( "{statusFiller} is null" );
+        }
+        this.statusFiller = statusFiller;
+        debugLog = statusFiller.getDebugLog();
+        this.scanThreads = scanThreads;
+    }
+
+
+    /**
+     * Scans the external working copies found by the walk of the entry, each external on its own worker. The externals
+     * found inside the externals are scanned the same way. The status of every external is added to the entry status
+     * and kept for the external properties. If only the revisions are requested, the externals are walked by
+     * {@link EntryStatusFiller#fillRevisions} so that their file contents are not compared either.
+     */
+    void fill( final Entry entry, final SvnOperationFactory operationFactory, StatusHandler statusHandler, final boolean revisionsOnly ) throws SVNException {
+        LinkedList<File> externalPaths = new LinkedList<File>( statusHandler.externalPaths );
+        if ( externalPaths.isEmpty() ) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        debugLog.info( format( "  scanning %s externals concurrently", externalPaths.size() ) );
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( externalPaths.size(), Math.max( scanThreads, Runtime.getRuntime().availableProcessors() ) ) );
+        try {
+            CompletionService<StatusHandler> externalScans = new ExecutorCompletionService<StatusHandler>( executor );
+            int pendingScans = 0;
+            while ( true ) {
+                while ( !externalPaths.isEmpty() ) {
+                    final File externalPath = externalPaths.removeFirst();
+                    final Entry externalEntry = entry.createExternalEntry( externalPath, statusHandler.getRelativePath( externalPath.getAbsolutePath() ) );
+                    externalScans.submit( new Callable<StatusHandler>() {
+                        public StatusHandler call() throws SVNException {
+                            StatusHandler externalHandler = new StatusHandler( externalEntry, debugLog );
+                            SvnOperationFactory externalOperationFactory = EntryStatusFiller.copyOperationFactory( operationFactory );
+                            try {
+                                if ( revisionsOnly ) {
+                                    statusFiller.fillRevisions( externalEntry, SvnOperationFactory.detectWcGeneration( externalPath, true ), externalHandler );
+                                } else {
+                                    statusFiller.createBackend( externalEntry, externalOperationFactory ).status( externalPath, SVNDepth.fromString( externalEntry.getDepth() ), true, externalEntry.reportIgnored(), false, externalHandler );
+                                }
+                                statusFiller.fillInfo( externalEntry, externalOperationFactory, externalHandler );
+                            } finally {
+                                externalOperationFactory.dispose();
+                            }
+                            return externalHandler;
+                        }
+                    } );
+                    pendingScans++;
+                }
+                if ( pendingScans == 0 ) {
+                    break;
+                }
+                Future<StatusHandler> externalScan;
+                try {
+                    externalScan = externalScans.take();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new SVNCancelException();
+                }
+                pendingScans--;
+                StatusHandler externalHandler = EntryStatusFiller.waitForScan( externalScan );
+                String name = statusHandler.getRelativePath( externalHandler.entryPath );
+                debugLog.info( format( "  external %s = %s@%s", name, externalHandler.repositoryPath, externalHandler.aggregate.getMaximumRevision() ) );
+                statusHandler.aggregate.add( externalHandler.aggregate );
+                statusHandler.externalHandlers.put( name, externalHandler );
+                externalPaths.addAll( externalHandler.externalPaths );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        statusHandler.metrics.addStatusTime( System.nanoTime() - startTime );
+    }
+
+}
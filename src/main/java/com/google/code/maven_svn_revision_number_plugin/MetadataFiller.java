@@ -0,0 +1,204 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnGetInfo;
+import org.tmatesoft.svn.core.wc2.SvnInfo;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnSchedule;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+import org.tmatesoft.svn.core.wc2.SvnWorkingCopyInfo;
+
+import static java.lang.String.format;
+
+/**
+ * Reads the revisions of the entries directly from the working copy metadata instead of walking the working copy with
+ * the status operation.
+ */
+final class MetadataFiller {
+
+    private final DebugLog debugLog;
+
+    /** The number of threads that read the {@code .svn/entries} files. */
+    private final int readThreads;
+
+
+    /**
+     * Creates a new {@code MetadataFiller} object.
+     *
+     * @param debugLog the log of the diagnostic messages
+     * @param readThreads the number of threads that read the {@code .svn/entries} files
+     */
+    MetadataFiller( DebugLog debugLog, int readThreads ) {
+        if ( debugLog == null ) {
+            throw new IllegalArgumentException( "{debugLog} is null" );
+        }
+        this.debugLog = debugLog;
+        this.readThreads = readThreads;
+    }
+
+
+    /**
+     * Reads the revisions and the repository location of the entry from the working copy database of the 1.7+ working
+     * copy or from the {@code .svn/entries} files of the 1.6 working copy.
+     *
+     * @param entry the entry to inspect
+     * @param wcGeneration the format of the working copy
+     * @param statusHandler the status handler of the entry
+     *
+     * @return {@code true} if the metadata was read, {@code false} if the entry should be walked instead
+     *
+     * @throws SVNException if the working copy root could not be found
+     */
+    boolean fill( Entry entry, SvnWcGeneration wcGeneration, StatusHandler statusHandler ) throws SVNException {
+        if ( SvnWcGeneration.V16.equals( wcGeneration ) ) {
+            return fillEntriesMetadata( entry, statusHandler );
+        }
+        if ( !SvnWcGeneration.V17.equals( wcGeneration ) ) {
+            return false;
+        }
+        File workingCopyRoot = SvnOperationFactory.getWorkingCopyRoot( entry.getPath(), true );
+        if ( workingCopyRoot == null ) {
+            return false;
+        }
+        WcDbReader wcDbReader = new WcDbReader( workingCopyRoot );
+        if ( !wcDbReader.exists() ) {
+            return false;
+        }
+        StatusAggregate metadata = new StatusAggregate();
+        WcDbReader.Location location;
+        try {
+            location = wcDbReader.read( entry.getPath(), SVNDepth.fromString( entry.getDepth() ), metadata );
+        } catch ( SqlJetException e ) {
+            debugLog.warning( format( "failed to read wc.db of %s, falling back to the status walk: %s", workingCopyRoot, e.getMessage() ) );
+            return false;
+        }
+        debugLog.info( format( "  wc.db root = %s", workingCopyRoot ) );
+        statusHandler.repositoryRoot = location == null ? "" : location.getRepositoryRoot();
+        statusHandler.repositoryPath = location == null ? "" : location.getRepositoryPath();
+        statusHandler.aggregate.add( metadata );
+        return true;
+    }
+
+    private boolean fillEntriesMetadata( Entry entry, StatusHandler statusHandler ) {
+        if ( !EntriesReader.exists( entry.getPath() ) ) {
+            return false;
+        }
+        StatusAggregate metadata = new StatusAggregate();
+        WcDbReader.Location location;
+        try {
+            location = new EntriesReader( readThreads ).read( entry.getPath(), SVNDepth.fromString( entry.getDepth() ), metadata );
+        } catch ( IOException e ) {
+            debugLog.warning( format( "failed to read the entries files of %s, falling back to the status walk: %s", entry.getPath(), e.getMessage() ) );
+            return false;
+        }
+        debugLog.info( "  read the .svn/entries files" );
+        statusHandler.repositoryRoot = location == null ? "" : location.getRepositoryRoot();
+        statusHandler.repositoryPath = location == null ? "" : location.getRepositoryPath();
+        statusHandler.aggregate.add( metadata );
+        return true;
+    }
+
+    /**
+     * Walks the 1.6 working copy with the info operation and passes each node to the status handler as a normal node.
+     * The nodes scheduled for addition or copied are skipped like {@link EntriesReader} does, and the externals are
+     * found in the {@code svn:externals} properties of the walked directories.
+     */
+    void fillEntriesRevisions( Entry entry, SvnOperationFactory operationFactory, final StatusHandler statusHandler ) throws SVNException {
+        SvnGetInfo getInfo = operationFactory.createGetInfo();
+        getInfo.setSingleTarget( SvnTarget.fromFile( entry.getPath() ) );
+        getInfo.setDepth( SVNDepth.fromString( entry.getDepth() ) );
+        getInfo.setReceiver( new ISvnObjectReceiver<SvnInfo>() {
+            public void receive( SvnTarget target, SvnInfo info ) throws SVNException {
+                SvnWorkingCopyInfo wcInfo = info.getWcInfo();
+                if ( wcInfo != null && ( SvnSchedule.ADD.equals( wcInfo.getSchedule() ) || wcInfo.getCopyFromUrl() != null ) ) {
+                    return;
+                }
+                File file = target.getFile();
+                statusHandler.receive( target, createStatus( file, info ) );
+                if ( statusHandler.externalPaths != null && SVNNodeKind.DIR.equals( info.getKind() ) ) {
+                    List<String> externalPaths;
+                    try {
+                        externalPaths = EntriesReader.readExternalPaths( file );
+                    } catch ( IOException e ) {
+                        throw new SVNException( SVNErrorMessage.create( SVNErrorCode.IO_ERROR, "failed to read the externals of {0}: {1}", file, e.getMessage() ), e );
+                    }
+                    for ( String externalPath : externalPaths ) {
+                        File external = new File( file, externalPath );
+                        if ( statusHandler.pathFilter == null || statusHandler.pathFilter.accepts( statusHandler.getRelativePath( external.getAbsolutePath() ) ) ) {
+                            statusHandler.externalPaths.add( external );
+                        }
+                    }
+                }
+            }
+        } );
+        getInfo.run();
+        debugLog.info( "  walked the .svn/entries files" );
+    }
+
+    private static SvnStatus createStatus( File file, SvnInfo info ) {
+        SvnStatus status = new SvnStatus();
+        status.setPath( file );
+        status.setKind( info.getKind() );
+        status.setVersioned( true );
+        status.setNodeStatus( SVNStatusType.STATUS_NORMAL );
+        status.setTextStatus( SVNStatusType.STATUS_NORMAL );
+        status.setPropertiesStatus( SVNStatusType.STATUS_NONE );
+        status.setRepositoryNodeStatus( SVNStatusType.STATUS_NONE );
+        status.setRepositoryTextStatus( SVNStatusType.STATUS_NONE );
+        status.setRepositoryPropertiesStatus( SVNStatusType.STATUS_NONE );
+        status.setRevision( info.getRevision() );
+        status.setChangedRevision( info.getLastChangedRevision() );
+        status.setChangedDate( info.getLastChangedDate() );
+        status.setRepositoryChangedRevision( -1L );
+        SVNURL repositoryRoot = info.getRepositoryRootUrl();
+        SVNURL url = info.getUrl();
+        status.setRepositoryRootUrl( repositoryRoot );
+        if ( repositoryRoot != null && url != null && url.getPath().startsWith( repositoryRoot.getPath() ) ) {
+            String repositoryPath = url.getPath().substring( repositoryRoot.getPath().length() );
+            status.setRepositoryRelativePath( repositoryPath.startsWith( "/" ) ? repositoryPath.substring( 1 ) : repositoryPath );
+        }
+        return status;
+    }
+
+}
@@ -0,0 +1,140 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the metrics of the inspected entries and writes them as a JSON document.
+ * <p/>
+ * The document contains the project identifier and the array of entries, each entry has the prefix, the path and the
+ * metrics with the {@code metrics.} prefix removed from their names:
+ * <pre>
+ * {
+ *   "project": "groupId:artifactId",
+ *   "entries": [
+ *     { "prefix": "...", "path": "...", "totalTime": 120, "nodes": 4200, ... }
+ *   ]
+ * }
+ * </pre>
+ */
+final class MetricsReport {
+
+    private static final String METRICS_PREFIX = "metrics.";
+
+    private final String project;
+
+    private final List<String> entries = new ArrayList<String>();
+
+
+    /**
+     * Creates a new empty {@code MetricsReport} object.
+     *
+     * @param project the project identifier
+     */
+    MetricsReport( String project ) {
+        this.project = project;
+    }
+
+
+    /**
+     * Adds the metrics of the entry to this report.
+     *
+     * @param entry the entry
+     * @param properties the entry output properties, only the metrics properties are added
+     */
+    void add( Entry entry, Map<String, Object> properties ) {
+        StringBuilder json = new StringBuilder();
+        json.append( "{ \"prefix\": " ).append( quote( entry.getPrefix() ) );
+        json.append( ", \"path\": " ).append( quote( entry.getPath().getAbsolutePath() ) );
+        for ( Map.Entry<String, Object> property : properties.entrySet() ) {
+            if ( property.getKey().startsWith( METRICS_PREFIX ) ) {
+                json.append( ", " ).append( quote( property.getKey().substring( METRICS_PREFIX.length() ) ) ).append( ": " );
+                if ( property.getValue() instanceof Number ) {
+                    json.append( property.getValue() );
+                } else {
+                    json.append( quote( String.valueOf( property.getValue() ) ) );
+                }
+            }
+        }
+        json.append( " }" );
+        entries.add( json.toString() );
+    }
+
+    /**
+     * Writes this report to the specified file, replacing its previous contents.
+     *
+     * @param file the report file
+     *
+     * @throws IOException if the file could not be written
+     */
+    void write( File file ) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException( "failed to create " + directory );
+        }
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try {
+            writer.write( "{\n" );
+            writer.write( "  \"project\": " + quote( project ) + ",\n" );
+            writer.write( "  \"entries\": [" );
+            for ( int i = 0; i < entries.size(); i++ ) {
+                writer.write( i == 0 ? "\n    " : ",\n    " );
+                writer.write( entries.get( i ) );
+            }
+            writer.write( "\n  ]\n" );
+            writer.write( "}\n" );
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote( String value ) {
+        StringBuilder quoted = new StringBuilder( value.length() + 2 );
+        quoted.append( '"' );
+        for ( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt( i );
+            if ( c == '"' || c == '\\' ) {
+                quoted.append( '\\' ).append( c );
+            } else if ( c < ' ' ) {
+                quoted.append( String.format( "\\u%04x", (int) c ) );
+            } else {
+                quoted.append( c );
+            }
+        }
+        quoted.append( '"' );
+        return quoted.toString();
+    }
+
+}
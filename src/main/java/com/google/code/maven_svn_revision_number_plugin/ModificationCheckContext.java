@@ -0,0 +1,150 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.internal.wc.SVNFileType;
+import org.tmatesoft.svn.core.internal.wc.SVNFileUtil;
+import org.tmatesoft.svn.core.internal.wc17.SVNWCContext;
+import org.tmatesoft.svn.core.internal.wc17.db.ISVNWCDb;
+import org.tmatesoft.svn.core.internal.wc17.db.Structure;
+import org.tmatesoft.svn.core.internal.wc17.db.StructureFields.NodeInfo;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+
+/**
+ * The 1.7+ working copy context that detects the local text modifications using the size and the modification time
+ * recorded in the working copy database, reading the file contents only when the configured check requires it.
+ * <p/>
+ * The supported checks are:
+ * <ul>
+ * <li>{@code content} - the file contents are compared if either the size or the modification time differ, this is
+ * the regular Subversion behavior;</li>
+ * <li>{@code timestamp} - the file is modified if either the size or the modification time differ;</li>
+ * <li>{@code size} - the file is modified if the size differs;</li>
+ * <li>{@code hybrid} - the file is modified if the size differs but the modification time does not, unmodified if the
+ * size does not differ, and the file contents are compared only if both differ.</li>
+ * </ul>
+ */
+final class ModificationCheckContext extends SVNWCContext {
+
+    static final String CONTENT = "content";
+
+    static final String TIMESTAMP = "timestamp";
+
+    static final String SIZE = "size";
+
+    static final String HYBRID = "hybrid";
+
+    private final String modificationCheck;
+
+    private final AtomicLong contentReads;
+
+
+    /**
+     * Creates a new {@code ModificationCheckContext} object.
+     *
+     * @param modificationCheck the modification check
+     * @param contentReads the counter of the files whose contents were compared
+     */
+    ModificationCheckContext( String modificationCheck, AtomicLong contentReads ) {
+        super( SVNWCUtil.createDefaultOptions( true ), null );
+        if ( !isSupported( modificationCheck ) ) {
+            throw new IllegalArgumentException( "{modificationCheck} is not supported: " + modificationCheck );
+        }
+        if ( contentReads == null ) {
+            throw new IllegalArgumentException( "{contentReads} is null" );
+        }
+        this.modificationCheck = modificationCheck;
+        this.contentReads = contentReads;
+    }
+
+
+    /**
+     * Checks whether the specified modification check is supported.
+     *
+     * @param modificationCheck the modification check
+     *
+     * @return {@code true} if the modification check is supported
+     */
+    static boolean isSupported( String modificationCheck ) {
+        return CONTENT.equals( modificationCheck ) || TIMESTAMP.equals( modificationCheck )
+                || SIZE.equals( modificationCheck ) || HYBRID.equals( modificationCheck );
+    }
+
+    /**
+     * Creates a new context with the same modification check and the same content reads counter. Contexts are not
+     * thread-safe, each concurrent operation factory needs its own copy.
+     *
+     * @return the new context
+     */
+    ModificationCheckContext copy() {
+        return new ModificationCheckContext( modificationCheck, contentReads );
+    }
+
+
+    @Override
+    public boolean isTextModified( File localAbsPath, boolean exactComparison ) throws SVNException {
+        if ( exactComparison || SVNFileType.getType( localAbsPath ) != SVNFileType.FILE ) {
+            return super.isTextModified( localAbsPath, exactComparison );
+        }
+        Structure<NodeInfo> info = getDb().readInfo( localAbsPath, NodeInfo.status, NodeInfo.kind, NodeInfo.checksum, NodeInfo.recordedSize, NodeInfo.recordedTime );
+        boolean recorded;
+        long recordedSize;
+        long recordedTime;
+        try {
+            ISVNWCDb.SVNWCDbStatus status = info.get( NodeInfo.status );
+            recorded = info.hasValue( NodeInfo.checksum ) && ISVNWCDb.SVNWCDbKind.File == info.get( NodeInfo.kind )
+                    && ( ISVNWCDb.SVNWCDbStatus.Normal == status || ISVNWCDb.SVNWCDbStatus.Added == status );
+            recordedSize = info.lng( NodeInfo.recordedSize );
+            recordedTime = info.lng( NodeInfo.recordedTime );
+        } finally {
+            info.release();
+        }
+        if ( !recorded || recordedSize < 0L ) {
+            return super.isTextModified( localAbsPath, false );
+        }
+
+        boolean sameSize = SVNFileUtil.getFileLength( localAbsPath ) == recordedSize;
+        boolean sameTime = recordedTime / 1000L == SVNFileUtil.getFileLastModified( localAbsPath );
+        if ( sameSize && sameTime ) {
+            return false;
+        }
+        if ( TIMESTAMP.equals( modificationCheck ) ) {
+            return true;
+        } else if ( SIZE.equals( modificationCheck ) ) {
+            return !sameSize;
+        } else if ( HYBRID.equals( modificationCheck ) && ( sameSize || sameTime ) ) {
+            return !sameSize;
+        }
+        contentReads.incrementAndGet();
+        return super.isTextModified( localAbsPath, false );
+    }
+
+}
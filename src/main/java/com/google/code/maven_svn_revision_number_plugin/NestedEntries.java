@@ -0,0 +1,110 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNDepth;
+
+/** Finds the entries whose status can be collected by the walk of another entry. */
+final class NestedEntries {
+
+    private NestedEntries() {
+    }
+
+
+    /**
+     * Assigns each entry that can be inspected by the walk of another entry to the outermost such entry.
+     *
+     * @param entries the entries in the order of the entries configuration
+     * @param walked whether every entry is inspected by a status walk, that is whether the entry statuses are neither
+     *        cached, watched nor taken from the shared scans
+     *
+     * @return the map from the entries that are inspected separately to the lists of entries nested in them, in the
+     *         order of the entries configuration
+     */
+    static Map<Entry, List<Entry>> group( Entry[] entries, boolean walked ) {
+        Map<Entry, Entry> outerEntries = new HashMap<Entry, Entry>();
+        for ( Entry entry : entries ) {
+            Entry outerEntry = null;
+            for ( Entry candidate : entries ) {
+                if ( walked && canShareWalk( candidate, entry ) && ( outerEntry == null || candidate.getPath().getAbsolutePath().length() < outerEntry.getPath().getAbsolutePath().length() ) ) {
+                    outerEntry = candidate;
+                }
+            }
+            if ( outerEntry != null ) {
+                outerEntries.put( entry, outerEntry );
+            }
+        }
+        Map<Entry, List<Entry>> entryGroups = new LinkedHashMap<Entry, List<Entry>>();
+        for ( Entry entry : entries ) {
+            if ( !outerEntries.containsKey( entry ) && !entryGroups.containsKey( entry ) ) {
+                entryGroups.put( entry, new ArrayList<Entry>() );
+            }
+        }
+        for ( Entry entry : entries ) {
+            Entry outerEntry = outerEntries.get( entry );
+            if ( outerEntry != null && !entryGroups.get( outerEntry ).contains( entry ) ) {
+                entryGroups.get( outerEntry ).add( entry );
+            }
+        }
+        return entryGroups;
+    }
+
+    /**
+     * Checks whether the status of the nested entry can be collected by the walk of the outer entry. The walk must be
+     * a regular status walk of the whole subtree that reports every node, and it must report the same nodes that the
+     * walk of the nested entry would report.
+     */
+    private static boolean canShareWalk( Entry outerEntry, Entry nestedEntry ) {
+        if ( outerEntry == nestedEntry || !outerEntry.isPropertyRequested( "status", "specialStatus", "changedSinceLastBuild" ) ) {
+            return false;
+        }
+        if ( !SVNDepth.INFINITY.equals( SVNDepth.fromString( outerEntry.getDepth() ) ) || !SVNDepth.INFINITY.equals( SVNDepth.fromString( nestedEntry.getDepth() ) ) ) {
+            return false;
+        }
+        if ( outerEntry.readWcDb() || nestedEntry.readWcDb() || !outerEntry.getPath().isDirectory() ) {
+            return false;
+        }
+        if ( outerEntry.hasPathFilter() || nestedEntry.hasPathFilter() || outerEntry.scanExternals() || nestedEntry.scanExternals() || !outerEntry.getBackend().equals( nestedEntry.getBackend() ) ) {
+            return false;
+        }
+        if ( outerEntry.reportIgnored() != nestedEntry.reportIgnored() || outerEntry.reportOutOfDate() != nestedEntry.reportOutOfDate()
+                || !outerEntry.getModificationCheck().equals( nestedEntry.getModificationCheck() )
+                || outerEntry.reportOutOfDate() && !outerEntry.getOutOfDateCheck().equals( nestedEntry.getOutOfDateCheck() ) ) {
+            return false;
+        }
+        return nestedEntry.getPath().getAbsolutePath().startsWith( outerEntry.getPath().getAbsolutePath() + File.separator );
+    }
+
+}
@@ -0,0 +1,218 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the working copy nodes of an entry by the include and exclude glob patterns. The patterns are matched against
+ * the node path relative to the entry path with the {@code /} separator, {@code *} matches any characters except the
+ * separator, {@code ?} matches a single character except the separator, and {@code **} matches any number of
+ * directories. A pattern also selects everything below the matched directory.
+ */
+final class PathFilter {
+
+    private final List<Pattern> includes;
+
+    private final List<Pattern> excludes;
+
+    private final List<String> excludedPaths;
+
+
+    private PathFilter( String[] includes, String[] excludes ) {
+        this.includes = compile( includes );
+        this.excludes = compile( excludes );
+        this.excludedPaths = getLiteralPrefixes( excludes );
+    }
+
+    /**
+     * Creates a filter for the specified patterns.
+     *
+     * @param includes the include patterns, or {@code null}
+     * @param excludes the exclude patterns, or {@code null}
+     *
+     * @return the filter, or {@code null} if there are no patterns
+     */
+    static PathFilter create( String[] includes, String[] excludes ) {
+        if ( ( includes == null || includes.length == 0 ) && ( excludes == null || excludes.length == 0 ) ) {
+            return null;
+        }
+        return new PathFilter( includes, excludes );
+    }
+
+    private static List<Pattern> compile( String[] globs ) {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        if ( globs != null ) {
+            for ( String glob : globs ) {
+                if ( glob != null && glob.trim().length() > 0 ) {
+                    patterns.add( compile( glob.trim() ) );
+                }
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * Collects the leading directories of the patterns that do not contain wildcards, they are the deepest directories
+     * known to contain everything that the patterns may match.
+     */
+    private static List<String> getLiteralPrefixes( String[] globs ) {
+        List<String> prefixes = new ArrayList<String>();
+        if ( globs != null ) {
+            for ( String glob : globs ) {
+                if ( glob != null && glob.trim().length() > 0 ) {
+                    String normalized = normalize( glob.trim() );
+                    int wildcard = normalized.length();
+                    for ( int i = 0; i < normalized.length(); i++ ) {
+                        char c = normalized.charAt( i );
+                        if ( c == '*' || c == '?' ) {
+                            wildcard = i;
+                            break;
+                        }
+                    }
+                    String prefix = wildcard == normalized.length() ? normalized : normalized.substring( 0, Math.max( 0, normalized.lastIndexOf( '/', wildcard ) ) );
+                    if ( prefix.length() > 0 ) {
+                        prefixes.add( prefix );
+                    }
+                }
+            }
+        }
+        return prefixes;
+    }
+
+    private static String normalize( String glob ) {
+        String normalized = glob.replace( '\\', '/' );
+        while ( normalized.startsWith( "/" ) ) {
+            normalized = normalized.substring( 1 );
+        }
+        while ( normalized.endsWith( "/" ) ) {
+            normalized = normalized.substring( 0, normalized.length() - 1 );
+        }
+        if ( normalized.endsWith( "/**" ) ) {
+            normalized = normalized.substring( 0, normalized.length() - 3 );
+        }
+        return normalized;
+    }
+
+    private static Pattern compile( String glob ) {
+        String normalized = normalize( glob );
+        StringBuilder regex = new StringBuilder();
+        for ( int i = 0; i < normalized.length(); i++ ) {
+            char c = normalized.charAt( i );
+            if ( c == '*' ) {
+                if ( i + 1 < normalized.length() && normalized.charAt( i + 1 ) == '*' ) {
+                    if ( i + 2 < normalized.length() && normalized.charAt( i + 2 ) == '/' ) {
+                        regex.append( "(?:.*/)?" );
+                        i += 2;
+                    } else {
+                        regex.append( ".*" );
+                        i++;
+                    }
+                } else {
+                    regex.append( "[^/]*" );
+                }
+            } else if ( c == '?' ) {
+                regex.append( "[^/]" );
+            } else {
+                regex.append( Pattern.quote( String.valueOf( c ) ) );
+            }
+        }
+        return Pattern.compile( regex.toString() );
+    }
+
+
+    /**
+     * Checks whether the node is selected by the patterns, that is whether it is not excluded and, if there are include
+     * patterns, whether it is included. The entry path itself is always selected.
+     *
+     * @param relativePath the node path relative to the entry path
+     *
+     * @return {@code true} if the node is selected
+     */
+    boolean accepts( String relativePath ) {
+        if ( relativePath.length() == 0 ) {
+            return true;
+        }
+        return !matches( excludes, relativePath ) && ( includes.isEmpty() || matches( includes, relativePath ) );
+    }
+
+    /**
+     * Checks whether the node is excluded. Whether an excluded directory is walked at all depends on
+     * {@link #hasExcludedPathBelow(String)}.
+     *
+     * @param relativePath the node path relative to the entry path
+     *
+     * @return {@code true} if the node is excluded
+     */
+    boolean isExcluded( String relativePath ) {
+        return relativePath.length() > 0 && matches( excludes, relativePath );
+    }
+
+    /**
+     * Checks whether an exclude pattern names a path strictly below the directory without wildcards, so the directory
+     * has to be listed level by level to skip that path. The patterns with wildcards cannot be located without listing
+     * the whole directory and their nodes are only rejected as they are reported.
+     *
+     * @param relativePath the directory path relative to the entry path
+     *
+     * @return {@code true} if an excluded path lies below the directory
+     */
+    boolean hasExcludedPathBelow( String relativePath ) {
+        for ( String excludedPath : excludedPaths ) {
+            if ( relativePath.length() == 0 ? excludedPath.length() > 0 : excludedPath.startsWith( relativePath + "/" ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Checks whether any of the patterns matches the path or one of its ancestors. */
+    private static boolean matches( List<Pattern> patterns, String relativePath ) {
+        if ( patterns.isEmpty() ) {
+            return false;
+        }
+        int end = relativePath.length();
+        while ( end > 0 ) {
+            String path = relativePath.substring( 0, end );
+            for ( Pattern pattern : patterns ) {
+                if ( pattern.matcher( path ).matches() ) {
+                    return true;
+                }
+            }
+            end = relativePath.lastIndexOf( '/', end - 1 );
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "includes=" + includes + ";excludes=" + excludes;
+    }
+
+}
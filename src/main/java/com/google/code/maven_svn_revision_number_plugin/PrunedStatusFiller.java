@@ -0,0 +1,102 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.LinkedList;
+
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/** Walks the entries with include or exclude patterns so that the excluded directories are not walked if possible. */
+final class PrunedStatusFiller {
+
+    private final EntryStatusFiller statusFiller;
+
+
+    /**
+     * Creates a new {@code PrunedStatusFiller} object.
+     *
+     * @param statusFiller the status filler that uses this strategy
+     */
+    PrunedStatusFiller( EntryStatusFiller statusFiller ) {
+        if ( statusFiller == null ) {
+            throw new IllegalArgumentException( "{statusFiller} is null" );
+        }
+        this.statusFiller = statusFiller;
+    }
+
+
+    /**
+     * Walks the entry so that the excluded directories named without wildcards are never listed. The directories that
+     * lie above such an excluded directory are walked with the immediates depth and their versioned subdirectories are
+     * queued unless they are excluded, every other directory is walked once with the infinity depth and the nodes
+     * excluded by the wildcard patterns are rejected as they are reported. The queue is used as a stack, so it holds
+     * only the pending siblings of the directories on the current path instead of a whole level of the tree.
+     */
+    void fill( Entry entry, SvnOperationFactory operationFactory, final StatusHandler statusHandler, boolean reportAll ) throws SVNException {
+        StatusBackend backend = statusFiller.createBackend( entry, operationFactory );
+        final String entryPath = entry.getPath().getAbsolutePath();
+        final LinkedList<File> directories = new LinkedList<File>();
+        directories.add( entry.getPath() );
+        while ( !directories.isEmpty() ) {
+            File directory = directories.removeFirst();
+            final String directoryPath = directory.getAbsolutePath();
+            final boolean split = statusHandler.pathFilter.hasExcludedPathBelow( statusHandler.getRelativePath( directoryPath ) );
+            backend.status( directory, split ? SVNDepth.IMMEDIATES : SVNDepth.INFINITY, reportAll, entry.reportIgnored(), !entry.scanExternals(), new ISvnObjectReceiver<SvnStatus>() {
+                public void receive( SvnTarget target, SvnStatus status ) throws SVNException {
+                    File file = target.getFile();
+                    String path = file.getAbsolutePath();
+                    if ( path.equals( directoryPath ) ) {
+                        if ( path.equals( entryPath ) ) {
+                            statusHandler.receive( target, status );
+                        }
+                        return;
+                    }
+                    if ( !split ) {
+                        statusHandler.receive( target, status );
+                        return;
+                    }
+                    if ( statusHandler.pathFilter.isExcluded( statusHandler.getRelativePath( path ) ) ) {
+                        statusHandler.metrics.addExcludedNode();
+                        return;
+                    }
+                    statusHandler.receive( target, status );
+                    if ( EntryStatusFiller.isScannedSeparately( status.getNodeStatus() ) && !statusHandler.isScannedExternal( status ) && file.isDirectory() ) {
+                        directories.addFirst( file );
+                    }
+                }
+            } );
+        }
+    }
+
+}
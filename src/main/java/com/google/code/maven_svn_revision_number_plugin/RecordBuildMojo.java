@@ -0,0 +1,82 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.IOException;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import static java.lang.String.format;
+
+/**
+ * Records the state of the entries inspected by the {@code revision} goal with the {@code trackChanges} option, so
+ * that the following builds compare the entries with this build.
+ * <p/>
+ * The goal should run in one of the last phases of the build, the state is recorded only if the build reaches it.
+ *
+ * @goal record-build
+ * @phase verify
+ * @threadSafe
+ * @requiresProject
+ */
+public class RecordBuildMojo extends AbstractMojo {
+
+    /**
+     * The maven project.
+     *
+     * @parameter property="project"
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * Specifies whether the build should stop or continue if the state of the entries could not be recorded.
+     *
+     * @parameter property="svn-revision-number.failOnError" default-value="true"
+     */
+    private boolean failOnError;
+
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        try {
+            int count = BuildState.storePendingStates( project );
+            if ( getLog().isInfoEnabled() ) {
+                getLog().info( format( "recorded the build state of %s entries", count ) );
+            }
+        } catch ( IOException e ) {
+            if ( failOnError ) {
+                throw new MojoExecutionException( format( "failed to record the build state: %s", e.getMessage() ), e );
+            } else if ( getLog().isErrorEnabled() ) {
+                getLog().error( e );
+            }
+        }
+    }
+
+}
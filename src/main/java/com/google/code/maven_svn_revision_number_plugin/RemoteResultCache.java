@@ -0,0 +1,214 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Stores the results of the remote out-of-date checks between builds.
+ * <p/>
+ * All the results are kept in a single properties file that can be shared by several builds running on the same
+ * machine. The file is read under a shared lock and updated under an exclusive lock, each result is stored together
+ * with the time when it was obtained and the time to live of the build that stored it. A result is used until it
+ * becomes older than the time to live of the current build, and is removed only when it becomes older than its own time
+ * to live, so the builds that use a longer time to live keep their results. In the offline mode the stored results are
+ * used regardless of their age.
+ */
+final class RemoteResultCache {
+
+    /** Serializes the access of the threads of this JVM, the file locks are held on behalf of the whole JVM. */
+    private static final Object LOCK = new Object();
+
+    private final File file;
+
+    private final long timeToLive;
+
+    private final boolean offline;
+
+
+    /**
+     * Creates a new {@code RemoteResultCache} object.
+     *
+     * @param file the cache file
+     * @param timeToLive the time in milliseconds during which a stored result is used
+     * @param offline whether the stored results should be used regardless of their age
+     */
+    RemoteResultCache( File file, long timeToLive, boolean offline ) {
+        if ( file == null ) {
+            throw new IllegalArgumentException( "{file} is null" );
+        }
+        this.file = file;
+        this.timeToLive = timeToLive;
+        this.offline = offline;
+    }
+
+
+    /**
+     * Checks whether the remote repository should not be contacted at all.
+     *
+     * @return {@code true} if only the stored results can be used
+     */
+    boolean isOffline() {
+        return offline;
+    }
+
+    /**
+     * Returns the stored result.
+     *
+     * @param key the result key
+     *
+     * @return the stored result, or {@code null} if there is no result or it is too old
+     */
+    String get( String key ) {
+        if ( !file.isFile() ) {
+            return null;
+        }
+        Properties properties;
+        synchronized ( LOCK ) {
+            try {
+                RandomAccessFile input = new RandomAccessFile( file, "r" );
+                try {
+                    FileLock lock = input.getChannel().lock( 0L, Long.MAX_VALUE, true );
+                    try {
+                        properties = read( input.getChannel() );
+                    } finally {
+                        lock.release();
+                    }
+                } finally {
+                    input.close();
+                }
+            } catch ( IOException e ) {
+                return null;
+            }
+        }
+        String record = properties.getProperty( key );
+        if ( record == null ) {
+            return null;
+        }
+        int separator = record.indexOf( ';' );
+        if ( separator < 0 ) {
+            return null;
+        }
+        try {
+            long[] header = parseHeader( record.substring( 0, separator ) );
+            return offline || isFresh( header[ 0 ], timeToLive, System.currentTimeMillis() ) ? record.substring( separator + 1 ) : null;
+        } catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result, replacing the previous one. The results that are older than their own time to live are
+     * removed.
+     *
+     * @param key the result key
+     * @param value the result
+     *
+     * @throws IOException if the cache file can not be updated
+     */
+    void put( String key, String value ) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if ( directory != null && !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException( "unable to create " + directory );
+        }
+        long now = System.currentTimeMillis();
+        synchronized ( LOCK ) {
+            RandomAccessFile output = new RandomAccessFile( file, "rw" );
+            try {
+                FileChannel channel = output.getChannel();
+                FileLock lock = channel.lock();
+                try {
+                    Properties properties = read( channel );
+                    for ( Iterator<Map.Entry<Object, Object>> i = properties.entrySet().iterator(); i.hasNext(); ) {
+                        String record = String.valueOf( i.next().getValue() );
+                        int separator = record.indexOf( ';' );
+                        try {
+                            if ( separator < 0 ) {
+                                i.remove();
+                            } else {
+                                long[] header = parseHeader( record.substring( 0, separator ) );
+                                if ( !isFresh( header[ 0 ], header[ 1 ], now ) ) {
+                                    i.remove();
+                                }
+                            }
+                        } catch ( NumberFormatException e ) {
+                            i.remove();
+                        }
+                    }
+                    properties.setProperty( key, now + "," + timeToLive + ";" + value );
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    properties.store( bytes, null );
+                    channel.truncate( 0L );
+                    channel.write( ByteBuffer.wrap( bytes.toByteArray() ), 0L );
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the time when the result was obtained and its time to live. The results stored without the time to live
+     * by the previous versions get the time to live of the current build.
+     */
+    private long[] parseHeader( String header ) {
+        int separator = header.indexOf( ',' );
+        if ( separator < 0 ) {
+            return new long[]{ Long.parseLong( header ), timeToLive };
+        }
+        return new long[]{ Long.parseLong( header.substring( 0, separator ) ), Long.parseLong( header.substring( separator + 1 ) ) };
+    }
+
+    private static boolean isFresh( long time, long timeToLive, long now ) {
+        return time <= now && now - time < timeToLive;
+    }
+
+    private static Properties read( FileChannel channel ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate( (int) channel.size() );
+        while ( buffer.hasRemaining() ) {
+            if ( channel.read( buffer, buffer.position() ) < 0 ) {
+                break;
+            }
+        }
+        Properties properties = new Properties();
+        properties.load( new ByteArrayInputStream( buffer.array(), 0, buffer.position() ) );
+        return properties;
+    }
+
+}
@@ -0,0 +1,305 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.logging.Log;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.wc.DefaultSVNRepositoryPool;
+import org.tmatesoft.svn.core.wc.ISVNRepositoryPool;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc.SVNWCUtil;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnGetInfo;
+import org.tmatesoft.svn.core.wc2.SvnGetStatus;
+import org.tmatesoft.svn.core.wc2.SvnInfo;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/**
+ * Runs the remote out-of-date checks of the entries of a single plugin execution.
+ * <p/>
+ * The supported checks are:
+ * <ul>
+ * <li>{@code status} - the remote status of every node below the entry path is requested, an entry is out-of-date if
+ * any of its nodes was changed in the repository after the working copy revision of that node;</li>
+ * <li>{@code head} - the last changed revision of the entry location in the HEAD revision is requested with a single
+ * call, an entry is out-of-date if that revision is greater than the committed revision of the entry.</li>
+ * </ul>
+ * <p/>
+ * The checks run one at a time in a background thread, so the working copy walks of the entries proceed while the
+ * remote repository is contacted. All the checks of the execution share a repository pool that keeps the connections
+ * open, so the session to a repository is opened once and reused by the following entries. The pool is used only by
+ * the background thread and is disposed when that thread stops at the end of the execution, so no connection outlives
+ * the execution.
+ * If the remote result cache is used then the repository is contacted only if there is no fresh stored result of the
+ * same check.
+ */
+final class RemoteStatusBatch {
+
+    static final String STATUS = "status";
+
+    static final String HEAD = "head";
+
+
+    /**
+     * Checks whether the specified out-of-date check is supported.
+     *
+     * @param outOfDateCheck the out-of-date check
+     *
+     * @return {@code true} if the out-of-date check is supported
+     */
+    static boolean isSupported( String outOfDateCheck ) {
+        return STATUS.equals( outOfDateCheck ) || HEAD.equals( outOfDateCheck );
+    }
+
+
+    private final RemoteResultCache remoteResultCache;
+
+    private final Log log;
+
+    private final ExecutorService executor = new ThreadPoolExecutor( 1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>() ) {
+        @Override
+        protected void terminated() {
+            disposeRepositoryPool();
+        }
+    };
+
+    /** The repository pool of the checks, created by the first check that contacts the repository. */
+    private ISVNRepositoryPool repositoryPool;
+
+
+    /**
+     * Creates a new {@code RemoteStatusBatch} object.
+     *
+     * @param remoteResultCache the cache of the results of the previous checks, or {@code null}
+     * @param log the log
+     */
+    RemoteStatusBatch( RemoteResultCache remoteResultCache, Log log ) {
+        this.remoteResultCache = remoteResultCache;
+        this.log = log;
+    }
+
+
+    /**
+     * Schedules the remote status request of the entry.
+     *
+     * @param entry the entry to check
+     * @param metrics the metrics that count the repository sessions used by the check
+     *
+     * @return the absolute paths of the out-of-date nodes
+     */
+    Future<List<String>> submitStatus( final Entry entry, final EntryMetrics metrics ) {
+        return executor.submit( new Callable<List<String>>() {
+            public List<String> call() throws SVNException {
+                long startTime = System.nanoTime();
+                try {
+                    return checkStatus( entry, metrics );
+                } finally {
+                    metrics.addRemoteTime( System.nanoTime() - startTime );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Schedules the request of the last changed revision of the entry location in the HEAD revision.
+     *
+     * @param entry the entry to check
+     * @param metrics the metrics that count the repository sessions used by the check
+     *
+     * @return the last changed revision, or {@code -1} if the entry location does not exist in the HEAD revision
+     */
+    Future<Long> submitHeadRevision( final Entry entry, final EntryMetrics metrics ) {
+        return executor.submit( new Callable<Long>() {
+            public Long call() throws SVNException {
+                long startTime = System.nanoTime();
+                try {
+                    return checkHeadRevision( entry, metrics );
+                } finally {
+                    metrics.addRemoteTime( System.nanoTime() - startTime );
+                }
+            }
+        } );
+    }
+
+    private List<String> checkStatus( Entry entry, EntryMetrics metrics ) throws SVNException {
+        String key = null;
+        if ( remoteResultCache != null ) {
+            SvnInfo info = getInfo( entry );
+            key = getLocationKey( info ) + ";status;depth=" + entry.getDepth() + ";ignored=" + entry.reportIgnored()
+                    + ";revision=" + info.getRevision() + ";path=" + entry.getPath().getAbsolutePath();
+            String result = remoteResultCache.get( key );
+            if ( result != null ) {
+                return result.length() == 0 ? new ArrayList<String>() : Arrays.asList( result.split( "\n" ) );
+            }
+            if ( remoteResultCache.isOffline() ) {
+                return new ArrayList<String>();
+            }
+        }
+        List<String> outOfDatePaths = requestStatus( entry, metrics );
+        if ( key != null ) {
+            StringBuilder result = new StringBuilder();
+            for ( String path : outOfDatePaths ) {
+                if ( result.length() > 0 ) {
+                    result.append( '\n' );
+                }
+                result.append( path );
+            }
+            storeResult( key, result.toString() );
+        }
+        return outOfDatePaths;
+    }
+
+    private List<String> requestStatus( Entry entry, EntryMetrics metrics ) throws SVNException {
+        final List<String> outOfDatePaths = new ArrayList<String>();
+        // the local modifications are not reported, so there is no need to compare the file contents
+        SvnOperationFactory operationFactory = new SvnOperationFactory( new ModificationCheckContext( ModificationCheckContext.TIMESTAMP, new AtomicLong() ) );
+        operationFactory.setRepositoryPool( metrics.countRemoteSessions( getRepositoryPool() ) );
+        try {
+            SvnGetStatus statusOperation = operationFactory.createGetStatus();
+            statusOperation.setSingleTarget( SvnTarget.fromFile( entry.getPath() ) );
+            statusOperation.setDepth( SVNDepth.fromString( entry.getDepth() ) );
+            statusOperation.setRevision( SVNRevision.HEAD );
+            statusOperation.setReportAll( false );
+            statusOperation.setReportIgnored( entry.reportIgnored() );
+            statusOperation.setRemote( true );
+            statusOperation.setReceiver( new ISvnObjectReceiver<SvnStatus>() {
+                public void receive( SvnTarget target, SvnStatus status ) {
+                    if ( status.getRepositoryChangedRevision() > status.getChangedRevision() ) {
+                        outOfDatePaths.add( target.getFile().getAbsolutePath() );
+                    }
+                }
+            } );
+            statusOperation.run();
+        } finally {
+            operationFactory.dispose();
+        }
+        return outOfDatePaths;
+    }
+
+    private long checkHeadRevision( Entry entry, EntryMetrics metrics ) throws SVNException {
+        SvnInfo info = getInfo( entry );
+        String key = null;
+        if ( remoteResultCache != null ) {
+            key = getLocationKey( info ) + ";head";
+            String result = remoteResultCache.get( key );
+            if ( result != null ) {
+                try {
+                    return Long.parseLong( result );
+                } catch ( NumberFormatException e ) {
+                    // request the revision again
+                }
+            }
+            if ( remoteResultCache.isOffline() ) {
+                return -1L;
+            }
+        }
+        long headRevision = requestHeadRevision( info.getUrl(), metrics );
+        if ( key != null ) {
+            storeResult( key, String.valueOf( headRevision ) );
+        }
+        return headRevision;
+    }
+
+    private long requestHeadRevision( SVNURL url, EntryMetrics metrics ) throws SVNException {
+        SVNDirEntry headEntry = metrics.countRemoteSessions( getRepositoryPool() ).createRepository( url, true ).info( "", -1L );
+        return headEntry == null ? -1L : headEntry.getRevision();
+    }
+
+    /**
+     * Returns the repository pool of the checks, the pool is created on the first call. The pooled sessions may be used by
+     * one operation at a time, so the pool must be used only by the background thread.
+     *
+     * @return the repository pool
+     */
+    private ISVNRepositoryPool getRepositoryPool() {
+        if ( repositoryPool == null ) {
+            // the repository protocols are registered when the first session to a repository is created
+            repositoryPool = RepositoryFactories.setupOnDemand( new DefaultSVNRepositoryPool( SVNWCUtil.createDefaultAuthenticationManager(), SVNWCUtil.createDefaultOptions( true ) ) );
+        }
+        return repositoryPool;
+    }
+
+    /** Closes the connections of the repository pool, called once the background thread has completed its last check. */
+    private void disposeRepositoryPool() {
+        if ( repositoryPool != null ) {
+            repositoryPool.dispose();
+            repositoryPool = null;
+        }
+    }
+
+    private static SvnInfo getInfo( Entry entry ) throws SVNException {
+        SvnOperationFactory operationFactory = new SvnOperationFactory();
+        try {
+            SvnGetInfo infoOperation = operationFactory.createGetInfo();
+            infoOperation.setSingleTarget( SvnTarget.fromFile( entry.getPath() ) );
+            return infoOperation.run();
+        } finally {
+            operationFactory.dispose();
+        }
+    }
+
+    /** Returns the repository UUID and the path of the entry location inside the repository. */
+    private static String getLocationKey( SvnInfo info ) {
+        return info.getRepositoryUuid() + ':' + info.getUrl().toString().substring( info.getRepositoryRootUrl().toString().length() );
+    }
+
+    private void storeResult( String key, String result ) {
+        try {
+            remoteResultCache.put( key, result );
+        } catch ( IOException e ) {
+            if ( log.isDebugEnabled() ) {
+                log.debug( "failed to store the remote result: " + e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Stops the background thread, the checks that did not start yet are discarded. The repository pool is disposed as
+     * soon as the running check, if any, is completed.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
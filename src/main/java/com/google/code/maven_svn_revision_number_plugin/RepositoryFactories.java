@@ -0,0 +1,132 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.tmatesoft.svn.core.ISVNCanceller;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.wc.ISVNRepositoryPool;
+import org.tmatesoft.svn.util.ISVNDebugLog;
+
+/**
+ * Registers the repository access protocols on demand. The local working copy operations do not need any of them, so
+ * the protocol implementations are loaded only when a session to a repository with the matching URL is created.
+ */
+final class RepositoryFactories {
+
+    /** The protocol families that are already registered. */
+    private static final Set<String> REGISTERED = new HashSet<String>();
+
+
+    private RepositoryFactories() {
+    }
+
+
+    /**
+     * Registers the implementation of the protocol of the specified URL unless it is already registered.
+     *
+     * @param url the repository URL
+     */
+    static void setup( SVNURL url ) {
+        String protocol = url.getProtocol();
+        synchronized ( REGISTERED ) {
+            if ( "http".equals( protocol ) || "https".equals( protocol ) ) {
+                if ( REGISTERED.add( "dav" ) ) {
+                    DAVRepositoryFactory.setup(); // http, https
+                }
+            } else if ( "svn".equals( protocol ) || protocol.startsWith( "svn+" ) ) {
+                if ( REGISTERED.add( "svn" ) ) {
+                    SVNRepositoryFactoryImpl.setup(); // svn, svn+xxx
+                }
+            } else if ( "file".equals( protocol ) ) {
+                if ( REGISTERED.add( "fs" ) ) {
+                    FSRepositoryFactory.setup(); // file
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the repository pool that registers the protocol of each repository before creating a session to it.
+     *
+     * @param repositoryPool the repository pool that actually creates the sessions
+     *
+     * @return the registering repository pool
+     */
+    static ISVNRepositoryPool setupOnDemand( ISVNRepositoryPool repositoryPool ) {
+        return new SetupRepositoryPool( repositoryPool );
+    }
+
+
+    /** Delegates to another pool and registers the repository protocols on demand. */
+    private static final class SetupRepositoryPool implements ISVNRepositoryPool {
+
+        private final ISVNRepositoryPool delegate;
+
+
+        private SetupRepositoryPool( ISVNRepositoryPool delegate ) {
+            this.delegate = delegate;
+        }
+
+
+        public SVNRepository createRepository( SVNURL url, boolean mayReuse ) throws SVNException {
+            setup( url );
+            return delegate.createRepository( url, mayReuse );
+        }
+
+        public void setAuthenticationManager( ISVNAuthenticationManager authenticationManager ) {
+            delegate.setAuthenticationManager( authenticationManager );
+        }
+
+        public void setCanceller( ISVNCanceller canceller ) {
+            delegate.setCanceller( canceller );
+        }
+
+        public void setDebugLog( ISVNDebugLog log ) {
+            delegate.setDebugLog( log );
+        }
+
+        @SuppressWarnings( "deprecation" )
+        public void shutdownConnections( boolean shutdownAll ) {
+            delegate.shutdownConnections( shutdownAll );
+        }
+
+        public void dispose() {
+            delegate.dispose();
+        }
+
+    }
+
+}
@@ -0,0 +1,173 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Restores the status of the entries from the results stored in the result cache or kept by the watcher of the
+ * working copy, and stores the new results.
+ * <p/>
+ * The entries with the {@code infinity} depth are stored by the items immediately below the entry directory, so only
+ * the changed items are inspected again.
+ */
+final class ResultCacheFiller {
+
+    private final EntryStatusFiller statusFiller;
+
+    private final DebugLog debugLog;
+
+    /** The result cache, {@code null} if the results are watched instead. */
+    private final EntryResultCache resultCache;
+
+
+    /**
+     * Creates a new {@code ResultCacheFiller} object.
+     *
+     * @param statusFiller the status filler that uses this strategy
+     * @param cacheDirectory the directory of the result cache, or {@code null} if the results are only watched
+     * @param watch whether the results are kept in memory and watched for changes instead of the result cache
+     */
+    ResultCacheFiller( EntryStatusFiller statusFiller, File cacheDirectory, boolean watch ) {
+        if ( statusFiller == null ) {
+            throw new IllegalArgumentException( "{statusFiller} is null" );
+        }
+        if ( cacheDirectory == null && !watch ) {
+            throw new IllegalArgumentException( "{cacheDirectory} is null" );
+        }
+        this.statusFiller = statusFiller;
+        debugLog = statusFiller.getDebugLog();
+        resultCache = watch ? null : new EntryResultCache( cacheDirectory );
+    }
+
+
+    /**
+     * Restores the status of the entry from the stored result if the fingerprint of the entry did not change, updates
+     * the stored result if only some items immediately below the entry changed, or inspects the entry and stores the
+     * new result otherwise.
+     *
+     * @param entry the entry to inspect
+     * @param operationFactory the operation factory that detects the local modifications of the entry
+     * @param statusHandler the status handler of the entry
+     *
+     * @return {@code true} if the status was filled, {@code false} if the entry should be inspected without the stored
+     *         results
+     *
+     * @throws SVNException if the working copy could not be read
+     */
+    boolean fill( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler ) throws SVNException {
+        if ( entry.scanExternals() ) {
+            return false;
+        }
+        WorkingCopyWatcher.Watch entryWatch = resultCache == null ? WorkingCopyWatcher.getWatch( entry ) : null;
+        EntryResultCache.Record record = entryWatch != null ? entryWatch.getRecord() : resultCache.load( entry );
+        EntryResultCache.Fingerprint fingerprint = entryWatch != null ? entryWatch.getFingerprint() : EntryResultCache.fingerprint( entry, record );
+        if ( fingerprint == null ) {
+            return false;
+        }
+        if ( entryWatch != null && !entryWatch.isLayoutChecked() ) {
+            debugLog.info( "  checked the watched entry without the recorded layout" );
+        }
+        boolean incremental = entry.getPath().isDirectory() && SVNDepth.INFINITY.equals( SVNDepth.fromString( entry.getDepth() ) );
+        if ( record != null && record.matches( fingerprint ) ) {
+            List<String> changedChildren = new ArrayList<String>();
+            for ( String name : fingerprint.getChildren() ) {
+                if ( !record.isChildUnchanged( fingerprint, name ) ) {
+                    changedChildren.add( name );
+                }
+            }
+            if ( changedChildren.isEmpty() ) {
+                debugLog.info( entryWatch != null ? "  restored from the watched state" : "  restored from the result cache" );
+                statusHandler.repositoryRoot = record.getRepositoryRoot();
+                statusHandler.repositoryPath = record.getRepositoryPath();
+                statusHandler.aggregate.add( record.getAggregate() );
+                return true;
+            }
+            if ( incremental && record.isIncremental() ) {
+                debugLog.info( format( "  updating %s changed items of the %s", changedChildren.size(), entryWatch != null ? "watched state" : "cached result" ) );
+                statusHandler.repositoryRoot = record.getRepositoryRoot();
+                statusHandler.repositoryPath = record.getRepositoryPath();
+                statusHandler.trackChildren();
+                statusHandler.self.add( record.getSelfAggregate() );
+                for ( String name : fingerprint.getChildren() ) {
+                    if ( changedChildren.contains( name ) ) {
+                        fillChildStatus( entry, new File( entry.getPath(), name ), operationFactory, statusHandler );
+                    } else {
+                        StatusAggregate childAggregate = record.getChildAggregate( name );
+                        if ( childAggregate != null ) {
+                            statusHandler.children.put( name, childAggregate );
+                        }
+                        statusHandler.layouts.put( name, new StringBuilder( record.getChildLayout( name ) ) );
+                    }
+                }
+                statusHandler.combineChildren();
+                statusFiller.fillInfo( entry, operationFactory, statusHandler );
+                storeResult( entryWatch, entry, fingerprint, statusHandler, true );
+                return true;
+            }
+        }
+        if ( entry.getPath().isDirectory() ) {
+            statusHandler.trackChildren();
+        }
+        boolean walked = statusFiller.fillStatusAndInfo( entry, operationFactory, statusHandler );
+        storeResult( entryWatch, entry, fingerprint, statusHandler, incremental && walked );
+        return true;
+    }
+
+    private void storeResult( WorkingCopyWatcher.Watch entryWatch, Entry entry, EntryResultCache.Fingerprint fingerprint, StatusHandler statusHandler, boolean incremental ) {
+        EntryResultCache.Record record = new EntryResultCache.Record( fingerprint, statusHandler.repositoryRoot, statusHandler.repositoryPath, statusHandler.aggregate );
+        if ( statusHandler.children != null ) {
+            record.setChildren( entry.getPath(), fingerprint, statusHandler.self, statusHandler.children, statusHandler.layouts, incremental );
+        }
+        if ( entryWatch != null ) {
+            entryWatch.update( record );
+            return;
+        }
+        try {
+            resultCache.store( entry, record );
+        } catch ( IOException e ) {
+            debugLog.warning( format( "failed to store the result of %s in the result cache: %s", entry.getPath(), e.getMessage() ) );
+        }
+    }
+
+    private void fillChildStatus( Entry entry, File child, SvnOperationFactory operationFactory, StatusHandler statusHandler ) throws SVNException {
+        long startTime = System.nanoTime();
+        statusFiller.createBackend( entry, operationFactory ).status( child, SVNDepth.INFINITY, true, entry.reportIgnored(), !entry.scanExternals(), statusHandler );
+        statusHandler.metrics.addStatusTime( System.nanoTime() - startTime );
+    }
+
+}
@@ -26,33 +26,30 @@
 
 package com.google.code.maven_svn_revision_number_plugin;
 
-import java.util.Date;
-import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.Locale;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
-import org.tmatesoft.svn.core.SVNDepth;
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNException;
-import org.tmatesoft.svn.core.internal.io.dav.DAVRepositoryFactory;
-import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
-import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
-import org.tmatesoft.svn.core.wc.SVNRevision;
-import org.tmatesoft.svn.core.wc.SVNStatusType;
-import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
-import org.tmatesoft.svn.core.wc2.SvnGetInfo;
-import org.tmatesoft.svn.core.wc2.SvnGetStatus;
-import org.tmatesoft.svn.core.wc2.SvnInfo;
 import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
-import org.tmatesoft.svn.core.wc2.SvnStatus;
-import org.tmatesoft.svn.core.wc2.SvnTarget;
 
 import static java.lang.String.format;
 
@@ -66,11 +63,8 @@ import static java.lang.String.format;
  */
 public class RevisionMojo extends AbstractMojo {
 
-    static {
-        DAVRepositoryFactory.setup(); // http, https
-        SVNRepositoryFactoryImpl.setup(); // svn, svn+xxx
-        FSRepositoryFactory.setup(); // file
-    }
+    /** The names of the entry output properties without the prefix. */
+    private static final List<String> PROPERTY_NAMES = Arrays.asList( "repository", "path", "revision", "mixedRevisions", "committedRevision", "committedDate", "status", "specialStatus", "changedSinceLastBuild" );
 
 
     /**
@@ -81,6 +75,14 @@ public class RevisionMojo extends AbstractMojo {
      */
     private MavenProject project;
 
+    /**
+     * The current build session.
+     *
+     * @parameter property="session"
+     * @readonly
+     */
+    private MavenSession session;
+
     /**
      * Specifies the list of entries to inspect. Each entry has a separate configuration consisting of the local path,
      * report options and the prefix for the output properties.
@@ -95,6 +97,8 @@ public class RevisionMojo extends AbstractMojo {
      *     &lt;reportUnversioned&gt;true&lt;/reportUnversioned&gt;
      *     &lt;reportIgnored&gt;false&lt;/reportIgnored&gt;
      *     &lt;reportOutOfDate&gt;false&lt;/reportOutOfDate&gt;
+     *     &lt;readWcDb&gt;false&lt;/readWcDb&gt;
+     *     &lt;modificationCheck&gt;content&lt;/modificationCheck&gt;
      *   &lt;/entry&gt;
      * &lt;/entries&gt;
      * </pre>
@@ -121,8 +125,191 @@ public class RevisionMojo extends AbstractMojo {
      */
     private boolean failOnError;
 
+    /**
+     * Specifies whether the working copy scans should be shared between all the modules of the build.
+     * <p/>
+     * If enabled, the whole working copy is scanned once per build starting from the working copy root, and the status
+     * of every entry with the {@code infinity} depth is taken from the results of that scan. The scan is shared by the
+     * modules of a parallel build as well and is kept until the end of the build. Entries that use some other depth,
+     * path patterns, externals or the {@code trackChanges} option are inspected separately as usual.
+     *
+     * @parameter property="svn-revision-number.shareScans" default-value="false"
+     */
+    private boolean shareScans;
+
+    /**
+     * Specifies whether the entry statuses should be stored between builds.
+     * <p/>
+     * If enabled, the status of each entry is stored in the {@code cacheDirectory} together with a fingerprint of the
+     * entry configuration, the working copy metadata, including the metadata of the externals, the item names of the
+     * versioned directories and the sizes and modification times of the items that were reported as modified,
+     * unversioned and so on. If the fingerprint did not change since the previous build then the stored status is used
+     * without inspecting the working copy. If only some items immediately below the entry directory changed then only
+     * those items are inspected again. The files that had no local modifications are not checked, so an edit of such a
+     * file is noticed only after the working copy metadata changes, for example after an update, a revert or a commit.
+     * The remote repository is still checked on every build for the entries that report the out-of-date status.
+     *
+     * @parameter property="svn-revision-number.cacheResults" default-value="false"
+     */
+    private boolean cacheResults;
+
+    /**
+     * Specifies the directory where the entry statuses are stored if {@code cacheResults} is enabled.
+     *
+     * @parameter property="svn-revision-number.cacheDirectory" default-value="${project.build.directory}/svn-revision-number-cache"
+     */
+    private File cacheDirectory;
+
+    /**
+     * Specifies whether the entry statuses should be kept in memory and watched for changes between builds.
+     * <p/>
+     * This is useful for the build JVMs that run many builds, like the build daemons or the IDE-embedded builds. If
+     * enabled, the status of each entry is kept in memory in the same form as with {@code cacheResults}, and a
+     * background thread collects the files and directories that are created, modified or deleted in the versioned
+     * directories of the entry using the file system notifications. Unlike with {@code cacheResults} the edits of the
+     * files without local modifications are noticed too, unless the notifications are delivered after the build
+     * started. Once all the directories of an entry are watched, a build checks only the working copy metadata and the
+     * item names of the entry directory instead of the whole recorded layout. The layout is checked as with
+     * {@code cacheResults} when notifications were lost or the JVM does not support them. A build only inspects the
+     * items that changed, and the status is recalculated completely when the working copy metadata changes, for
+     * example after an update. An entry that is not used for ten minutes is no longer watched.
+     *
+     * @parameter property="svn-revision-number.watch" default-value="false"
+     */
+    private boolean watch;
+
+    /**
+     * Specifies the number of threads used to inspect the entries.
+     * <p/>
+     * If the value is greater than one then the entries are inspected concurrently, each thread using its own
+     * Subversion client. The output properties are still set in the order of the entries configuration.
+     *
+     * @parameter property="svn-revision-number.entryThreads" default-value="1"
+     */
+    private int entryThreads;
+
+    /**
+     * Specifies the number of threads used to scan the working copy below a single entry.
+     * <p/>
+     * If the value is greater than one then the status of each subdirectory immediately below the entry directory is
+     * obtained concurrently, each thread using its own Subversion client, and the results are combined into the entry
+     * status. Only the entries with the {@code infinity} depth are scanned this way.
+     *
+     * @parameter property="svn-revision-number.scanThreads" default-value="1"
+     */
+    private int scanThreads;
+
+    /**
+     * Specifies the native Subversion command line client used by the entries with the {@code svn} backend.
+     * <p/>
+     * If the executable cannot be run then these entries use svnkit instead.
+     *
+     * @parameter property="svn-revision-number.svnExecutable" default-value="svn"
+     */
+    private String svnExecutable;
+
+    /**
+     * Specifies whether the cost of inspecting each entry should be reported.
+     * <p/>
+     * If enabled, the time spent in each phase of the entry inspection, the number of working copy nodes walked, the
+     * number of files whose contents were compared with the pristine copies, the number of shared working copy scans
+     * performed for the entry, the number of sessions opened to the remote repository and the peak heap usage of the
+     * JVM in bytes are set as the {@code prefix.metrics.*} output properties and written to the {@code metricsFile} in
+     * the JSON format. The contents comparisons are counted for 1.7+ working copies only. The peak heap usage is the
+     * usage of the whole JVM, including Maven itself, and is shared by the entries inspected at the same time.
+     *
+     * @parameter property="svn-revision-number.reportMetrics" default-value="false"
+     */
+    private boolean reportMetrics;
+
+    /**
+     * Specifies the file where the entry metrics are written if {@code reportMetrics} is enabled.
+     *
+     * @parameter property="svn-revision-number.metricsFile" default-value="${project.build.directory}/svn-revision-number-metrics.json"
+     */
+    private File metricsFile;
+
+    /**
+     * Specifies the time in seconds during which the results of the remote out-of-date checks are reused.
+     * <p/>
+     * If the value is greater than zero then the result of each check is stored in the {@code remoteCacheFile}, and the
+     * following builds use the stored result instead of contacting the repository until it becomes older than the
+     * specified time. The result of the {@code status} check is stored for the working copy revision of the entry, so
+     * it is not reused after an update. The cache file can be shared by several builds running at the same time.
+     *
+     * @parameter property="svn-revision-number.remoteCacheTtl" default-value="0"
+     */
+    private int remoteCacheTtl;
+
+    /**
+     * Specifies the file where the results of the remote out-of-date checks are stored.
+     *
+     * @parameter property="svn-revision-number.remoteCacheFile" default-value="${user.home}/.m2/svn-revision-number-remote-cache.properties"
+     */
+    private File remoteCacheFile;
+
+    /**
+     * Specifies whether the remote repository should not be contacted.
+     * <p/>
+     * If enabled, the out-of-date status is taken from the {@code remoteCacheFile} regardless of the age of the stored
+     * results, and the entries that have no stored results are not reported as out-of-date.
+     *
+     * @parameter property="svn-revision-number.offline" default-value="false"
+     */
+    private boolean offline;
+
+    /**
+     * Specifies whether the entries should be compared with their state at the last successful build.
+     * <p/>
+     * If enabled, the {@code prefix.changedSinceLastBuild} output property tells whether the entry configuration, the
+     * last committed revision of the entry or its local modifications differ from the ones recorded by the
+     * {@code record-build} goal in the {@code buildStateDirectory}. The local modifications are compared by the paths,
+     * the statuses and, for the files, the sizes and modification times of the reported items, so an entry stays
+     * unchanged while its modifications are not touched. The working copy revision is not compared, so an update that
+     * brings no changes to the entry does not change it. An entry that was never recorded is considered changed. The
+     * {@code groupId:artifactId} of every project with a changed entry is appended to the comma-separated
+     * {@code svn-revision-number.changedProjects} property of the build session and of the project, so the modules
+     * built later in the same reactor can see the list of the changed modules.
+     *
+     * @parameter property="svn-revision-number.trackChanges" default-value="false"
+     */
+    private boolean trackChanges;
+
+    /**
+     * Specifies the directory where the entry states are recorded if {@code trackChanges} is enabled.
+     *
+     * @parameter property="svn-revision-number.buildStateDirectory" default-value="${user.home}/.m2/svn-revision-number-builds"
+     */
+    private File buildStateDirectory;
+
+    /** Runs the out-of-date checks of this execution, {@code null} if no entry checks the remote repository. */
+    private RemoteStatusBatch remoteStatusBatch;
+
+    /** The recorded entry states, {@code null} if the changes are not tracked. */
+    private BuildState buildState;
+
+    /** Whether any entry of this execution changed since the last successful build. */
+    private volatile boolean changedSinceLastBuild;
+
+    /** The log of the diagnostic messages, {@code null} until the first message. */
+    private DebugLog debugLog;
+
+    /** Fills the status of the entries of this execution, {@code null} until the first entry is inspected. */
+    private EntryStatusFiller statusFiller;
+
 
     public void execute() throws MojoExecutionException, MojoFailureException {
+        prepareEntries();
+        publishResults( inspectEntries() );
+    }
+
+    /** Returns the project whose entries are inspected. */
+    MavenProject getProject() {
+        return project;
+    }
+
+    /** Fills in the default entry configuration. */
+    void prepareEntries() {
         if ( entries == null || entries.length == 0 ) {
             if ( getLog().isDebugEnabled() ) {
                 getLog().debug( "configuration/entries section is not specified or is empty, defaulting to ${project.basedir}" );
@@ -132,24 +319,160 @@ public class RevisionMojo extends AbstractMojo {
             };
         }
 
-        SvnOperationFactory operationFactory = new SvnOperationFactory();
+        for ( Entry entry : entries ) {
+            if ( entry.getPath() == null ) {
+                entry.setPath( project.getBasedir() );
+            }
+            if ( entry.getPrefix() == null ) {
+                entry.setPrefix( project.getArtifactId() );
+            }
+            entry.setTrackChanges( trackChanges );
+        }
+
+        buildState = trackChanges ? new BuildState( buildStateDirectory ) : null;
+        changedSinceLastBuild = false;
+    }
+
+    /**
+     * Inspects the entries without setting the output properties.
+     *
+     * @return the map from the entries to their output properties
+     *
+     * @throws MojoExecutionException if some entry could not be inspected
+     */
+    Map<Entry, Map<String, Object>> inspectEntries() throws MojoExecutionException {
+        Map<Entry, List<Entry>> entryGroups = NestedEntries.group( entries, !cacheResults && !watch && !shareScans );
+        for ( Entry entry : entries ) {
+            if ( entry.reportOutOfDate() ) {
+                remoteStatusBatch = new RemoteStatusBatch( createRemoteResultCache(), getLog() );
+                break;
+            }
+        }
         try {
-            for ( Entry entry : entries ) {
-                if ( entry.getPath() == null ) {
-                    entry.setPath( project.getBasedir() );
+            if ( entryThreads > 1 && entryGroups.size() > 1 ) {
+                return processEntriesConcurrently( entryGroups );
+            }
+            Map<Entry, Map<String, Object>> results = new HashMap<Entry, Map<String, Object>>();
+            SvnOperationFactory operationFactory = new SvnOperationFactory();
+            try {
+                for ( Map.Entry<Entry, List<Entry>> entryGroup : entryGroups.entrySet() ) {
+                    results.putAll( processEntries( operationFactory, entryGroup.getKey(), entryGroup.getValue() ) );
                 }
-                if ( entry.getPrefix() == null ) {
-                    entry.setPrefix( project.getArtifactId() );
+            } finally {
+                operationFactory.dispose();
+            }
+            return results;
+        } finally {
+            if ( remoteStatusBatch != null ) {
+                remoteStatusBatch.shutdown();
+                remoteStatusBatch = null;
+            }
+        }
+    }
+
+    /**
+     * Sets the output properties of the entries in the order of the entries configuration.
+     *
+     * @param results the map from the entries to their output properties
+     */
+    void publishResults( Map<Entry, Map<String, Object>> results ) {
+        MetricsReport metricsReport = reportMetrics ? new MetricsReport( project.getGroupId() + ':' + project.getArtifactId() ) : null;
+        for ( Entry entry : entries ) {
+            setEntryProperties( entry, results.get( entry ), metricsReport );
+        }
+        if ( buildState != null && changedSinceLastBuild ) {
+            setProjectProperty( BuildState.CHANGED_PROJECTS_PROPERTY, BuildState.addChangedProject( session, project ) );
+        }
+        if ( metricsReport != null ) {
+            try {
+                metricsReport.write( metricsFile );
+            } catch ( IOException e ) {
+                logDebugWarning( format( "failed to write the metrics report %s: %s", metricsFile, e.getMessage() ) );
+            }
+        }
+    }
+
+    private Map<Entry, Map<String, Object>> processEntriesConcurrently( Map<Entry, List<Entry>> entryGroups ) throws MojoExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( entryThreads, entryGroups.size() ) );
+        try {
+            Map<Entry, Future<Map<Entry, Map<String, Object>>>> results = new HashMap<Entry, Future<Map<Entry, Map<String, Object>>>>();
+            for ( final Map.Entry<Entry, List<Entry>> entryGroup : entryGroups.entrySet() ) {
+                Future<Map<Entry, Map<String, Object>>> result = executor.submit( new Callable<Map<Entry, Map<String, Object>>>() {
+                    public Map<Entry, Map<String, Object>> call() throws MojoExecutionException {
+                        SvnOperationFactory operationFactory = new SvnOperationFactory();
+                        try {
+                            return processEntries( operationFactory, entryGroup.getKey(), entryGroup.getValue() );
+                        } finally {
+                            operationFactory.dispose();
+                        }
+                    }
+                } );
+                results.put( entryGroup.getKey(), result );
+                for ( Entry nestedEntry : entryGroup.getValue() ) {
+                    results.put( nestedEntry, result );
                 }
-                processEntry( operationFactory, entry );
             }
+            Map<Entry, Map<String, Object>> entryResults = new HashMap<Entry, Map<String, Object>>();
+            for ( Entry entry : entries ) {
+                entryResults.put( entry, getResult( results.get( entry ) ).get( entry ) );
+            }
+            return entryResults;
         } finally {
-            operationFactory.dispose();
+            executor.shutdownNow();
+        }
+    }
+
+    static <T> T getResult( Future<T> result ) throws MojoExecutionException {
+        try {
+            return result.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "interrupted while inspecting the entries", e );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof MojoExecutionException ) {
+                throw (MojoExecutionException) cause;
+            } else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            } else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            } else {
+                throw new MojoExecutionException( cause.getMessage(), cause );
+            }
+        }
+    }
+
+
+    /** Creates the status handler that collects the status of the entry. */
+    StatusHandler createStatusHandler( Entry entry ) {
+        return new StatusHandler( entry, getDebugLog() );
+    }
+
+    private synchronized EntryStatusFiller getStatusFiller() {
+        if ( statusFiller == null ) {
+            statusFiller = new EntryStatusFiller( getDebugLog(), svnExecutable, scanThreads, shareScans ? session : null, cacheResults ? cacheDirectory : null, watch );
         }
+        return statusFiller;
     }
 
+    Map<String, Object> processEntry( SvnOperationFactory operationFactory, Entry entry ) throws MojoExecutionException {
+        return processEntries( operationFactory, entry, Collections.<Entry>emptyList() ).get( entry );
+    }
 
-    private void processEntry( SvnOperationFactory operationFactory, Entry entry ) throws MojoExecutionException {
+    /**
+     * Inspects the entry and the entries nested in it with a single walk. The nested entries that turn out to be not
+     * covered by the walk, for example because they are unversioned or belong to an external, are inspected
+     * separately.
+     *
+     * @param operationFactory the operation factory
+     * @param entry the entry to inspect
+     * @param nestedEntries the entries whose paths are below the entry path
+     *
+     * @return the map from the entries to their output properties
+     *
+     * @throws MojoExecutionException if the entry could not be inspected
+     */
+    private Map<Entry, Map<String, Object>> processEntries( SvnOperationFactory operationFactory, Entry entry, List<Entry> nestedEntries ) throws MojoExecutionException {
         if ( getLog().isInfoEnabled() ) {
             getLog().info( format( "inspecting %s %s", entry.getPath().isFile() ? "file" : entry.getPath().isDirectory() ? "directory" : "path", entry.getPath() ) );
         }
@@ -158,13 +481,103 @@ public class RevisionMojo extends AbstractMojo {
         logDebugInfo( format( "  report unversioned = %s", entry.reportUnversioned() ) );
         logDebugInfo( format( "  report ignored = %s", entry.reportIgnored() ) );
         logDebugInfo( format( "  report out-of-date = %s", entry.reportOutOfDate() ) );
+        logDebugInfo( format( "  read wc.db = %s", entry.readWcDb() ) );
+        logDebugInfo( format( "  modification check = %s", entry.getModificationCheck() ) );
+        if ( !ModificationCheckContext.isSupported( entry.getModificationCheck() ) ) {
+            throw new MojoExecutionException( format( "unsupported modification check: %s", entry.getModificationCheck() ) );
+        }
+        logDebugInfo( format( "  backend = %s", entry.getBackend() ) );
+        if ( !StatusBackend.SVNKIT.equals( entry.getBackend() ) && !StatusBackend.SVN.equals( entry.getBackend() ) ) {
+            throw new MojoExecutionException( format( "unsupported backend: %s", entry.getBackend() ) );
+        }
+        if ( StatusBackend.SVN.equals( entry.getBackend() ) && !SvnCommandBackend.isAvailable( svnExecutable ) ) {
+            logDebugWarning( format( "the %s executable is not available, the status of %s will be read by svnkit", svnExecutable, entry.getPath() ) );
+        }
+        if ( entry.getIncludes() != null ) {
+            logDebugInfo( format( "  includes = %s", Arrays.asList( entry.getIncludes() ) ) );
+        }
+        if ( entry.getExcludes() != null ) {
+            logDebugInfo( format( "  excludes = %s", Arrays.asList( entry.getExcludes() ) ) );
+        }
+        if ( entry.getProperties() != null ) {
+            logDebugInfo( format( "  properties = %s", Arrays.asList( entry.getProperties() ) ) );
+            for ( String name : entry.getProperties() ) {
+                if ( !PROPERTY_NAMES.contains( name ) ) {
+                    throw new MojoExecutionException( format( "unknown property: %s", name ) );
+                }
+            }
+        }
+        if ( entry.reportOutOfDate() ) {
+            logDebugInfo( format( "  out-of-date check = %s", entry.getOutOfDateCheck() ) );
+            if ( !RemoteStatusBatch.isSupported( entry.getOutOfDateCheck() ) ) {
+                throw new MojoExecutionException( format( "unsupported out-of-date check: %s", entry.getOutOfDateCheck() ) );
+            }
+        }
+
+        for ( Entry nestedEntry : nestedEntries ) {
+            logDebugInfo( format( "  nested entry = %s (%s)", nestedEntry.getPath(), nestedEntry.getPrefix() ) );
+        }
 
         logDebugInfo( "calculating properties" );
-        StatusHandler statusHandler = new StatusHandler( entry );
+        long startTime = System.nanoTime();
+        EntryStatusFiller statusFiller = getStatusFiller();
+        StatusHandler statusHandler = createStatusHandler( entry );
+        List<StatusHandler> nestedHandlers = new ArrayList<StatusHandler>( nestedEntries.size() );
+        for ( Entry nestedEntry : nestedEntries ) {
+            StatusHandler nestedHandler = createStatusHandler( nestedEntry );
+            statusHandler.addNestedHandler( nestedHandler );
+            nestedHandlers.add( nestedHandler );
+        }
+        Map<Entry, Map<String, Object>> results = new LinkedHashMap<Entry, Map<String, Object>>();
+        SvnOperationFactory entryOperationFactory = operationFactory;
+        if ( reportMetrics || !ModificationCheckContext.CONTENT.equals( entry.getModificationCheck() ) ) {
+            entryOperationFactory = new SvnOperationFactory( new ModificationCheckContext( entry.getModificationCheck(), statusHandler.metrics.getContentComparisons() ) );
+        }
+        RemoteStatusBatch entryRemoteStatusBatch = remoteStatusBatch;
+        Future<List<String>> outOfDateCheck = null;
+        Map<StatusHandler, Future<Long>> headRevisionChecks = null;
+        if ( entry.reportOutOfDate() && entry.isPropertyRequested( "status", "specialStatus" ) ) {
+            if ( entryRemoteStatusBatch == null ) {
+                entryRemoteStatusBatch = new RemoteStatusBatch( createRemoteResultCache(), getLog() );
+            }
+            if ( RemoteStatusBatch.HEAD.equals( entry.getOutOfDateCheck() ) ) {
+                headRevisionChecks = new HashMap<StatusHandler, Future<Long>>();
+                headRevisionChecks.put( statusHandler, entryRemoteStatusBatch.submitHeadRevision( entry, statusHandler.metrics ) );
+                for ( StatusHandler nestedHandler : nestedHandlers ) {
+                    headRevisionChecks.put( nestedHandler, entryRemoteStatusBatch.submitHeadRevision( nestedHandler.entry, nestedHandler.metrics ) );
+                }
+            } else {
+                outOfDateCheck = entryRemoteStatusBatch.submitStatus( entry, statusHandler.metrics );
+            }
+        }
+        if ( reportMetrics ) {
+            statusHandler.metrics.startPeakHeap();
+        }
         try {
-            logDebugInfo( format( "  wc format = %s", SvnOperationFactory.detectWcGeneration( entry.getPath(), true ) ) );
-            fillStatus( entry, operationFactory, statusHandler );
-            fillInfo( entry, operationFactory, statusHandler );
+            boolean revisionsOnly = !entry.isPropertyRequested( "status", "specialStatus" ) && !( trackChanges && entry.isPropertyRequested( "changedSinceLastBuild" ) );
+            statusFiller.fill( entry, entryOperationFactory, statusHandler, revisionsOnly );
+            if ( outOfDateCheck != null ) {
+                List<String> outOfDatePaths = EntryStatusFiller.waitForScan( outOfDateCheck );
+                logDebugInfo( format( "  found %s out-of-date nodes", outOfDatePaths.size() ) );
+                statusHandler.addOutOfDatePaths( outOfDatePaths );
+                for ( StatusHandler nestedHandler : nestedHandlers ) {
+                    nestedHandler.addOutOfDatePaths( outOfDatePaths );
+                }
+            }
+            if ( headRevisionChecks != null ) {
+                long headRevision = EntryStatusFiller.waitForScan( headRevisionChecks.get( statusHandler ) );
+                logDebugInfo( format( "  head revision = %s", headRevision ) );
+                statusHandler.addHeadRevision( headRevision );
+            }
+            for ( StatusHandler nestedHandler : nestedHandlers ) {
+                if ( nestedHandler.isCoveredByWalk() ) {
+                    if ( headRevisionChecks != null ) {
+                        nestedHandler.addHeadRevision( EntryStatusFiller.waitForScan( headRevisionChecks.get( nestedHandler ) ) );
+                    }
+                    statusFiller.fillInfo( nestedHandler.entry, entryOperationFactory, nestedHandler );
+                    results.put( nestedHandler.entry, createEntryProperties( nestedHandler ) );
+                }
+            }
         } catch ( SVNException e ) {
             if ( e.getErrorMessage() != null && ( SVNErrorCode.WC_NOT_WORKING_COPY.equals( e.getErrorMessage().getErrorCode() ) || SVNErrorCode.WC_PATH_NOT_FOUND.equals( e.getErrorMessage().getErrorCode() ) ) ) {
                 statusHandler.resetProperties( true );
@@ -176,34 +589,96 @@ public class RevisionMojo extends AbstractMojo {
                 }
                 statusHandler.resetProperties();
             }
+        } finally {
+            if ( outOfDateCheck != null ) {
+                outOfDateCheck.cancel( false );
+            }
+            if ( headRevisionChecks != null ) {
+                for ( Future<Long> headRevisionCheck : headRevisionChecks.values() ) {
+                    headRevisionCheck.cancel( false );
+                }
+            }
+            if ( entryRemoteStatusBatch != remoteStatusBatch ) {
+                entryRemoteStatusBatch.shutdown();
+            }
+            if ( entryOperationFactory != operationFactory ) {
+                entryOperationFactory.dispose();
+            }
+            if ( reportMetrics ) {
+                statusHandler.metrics.measurePeakHeap();
+            }
+        }
+        statusHandler.metrics.addTotalTime( System.nanoTime() - startTime );
+        if ( entryOperationFactory != operationFactory ) {
+            logDebugInfo( format( "  compared the contents of %s files", statusHandler.metrics.getContentComparisons().get() ) );
+        }
+        results.put( entry, createEntryProperties( statusHandler ) );
+        for ( Entry nestedEntry : nestedEntries ) {
+            if ( !results.containsKey( nestedEntry ) ) {
+                logDebugInfo( format( "nested entry %s is not covered by the walk of %s", nestedEntry.getPath(), entry.getPath() ) );
+                results.put( nestedEntry, processEntry( operationFactory, nestedEntry ) );
+            }
         }
-        setProjectProperties( entry.getPrefix(), statusHandler.createProperties() );
+        return results;
     }
 
+    private RemoteResultCache createRemoteResultCache() {
+        if ( remoteCacheTtl <= 0 && !offline ) {
+            return null;
+        }
+        return new RemoteResultCache( remoteCacheFile, remoteCacheTtl * 1000L, offline );
+    }
 
-    private void fillStatus( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler ) throws SVNException {
-        SvnGetStatus statusOperation = operationFactory.createGetStatus();
-        statusOperation.setSingleTarget( SvnTarget.fromFile( entry.getPath() ) );
-        statusOperation.setDepth( SVNDepth.fromString( entry.getDepth() ) );
-        statusOperation.setRevision( SVNRevision.WORKING );
-        statusOperation.setReportAll( true );
-        statusOperation.setReportIgnored( entry.reportIgnored() );
-        statusOperation.setRemote( entry.reportOutOfDate() );
-        statusOperation.setReceiver( statusHandler );
-        statusOperation.run();
+    private Map<String, Object> createEntryProperties( StatusHandler statusHandler ) {
+        statusHandler.metrics.addNodes( statusHandler.receivedNodes );
+        Map<String, Object> properties = statusHandler.createProperties();
+        if ( buildState != null ) {
+            properties.put( "changedSinceLastBuild", isChangedSinceLastBuild( statusHandler ) );
+        }
+        if ( statusHandler.entry.getProperties() != null ) {
+            properties.keySet().retainAll( Arrays.asList( statusHandler.entry.getProperties() ) );
+        }
+        if ( reportMetrics ) {
+            properties.putAll( statusHandler.metrics.createProperties() );
+        }
+        for ( Map.Entry<String, StatusHandler> external : statusHandler.externalHandlers.entrySet() ) {
+            for ( Map.Entry<String, Object> externalProperty : createEntryProperties( external.getValue() ).entrySet() ) {
+                properties.put( "externals." + external.getKey() + '.' + externalProperty.getKey(), externalProperty.getValue() );
+            }
+        }
+        return properties;
     }
 
-    private void fillInfo( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler ) throws SVNException {
-        if ( statusHandler.repositoryPath == null || statusHandler.repositoryPath.length() == 0 ) {
-            SvnGetInfo infoOperation = operationFactory.createGetInfo();
-            infoOperation.setSingleTarget( SvnTarget.fromFile( entry.getPath() ) );
-            SvnInfo infoResult = infoOperation.run();
-            statusHandler.repositoryRoot = infoResult.getRepositoryRootUrl().toString();
-            statusHandler.repositoryPath = infoResult.getUrl().toString().substring( statusHandler.repositoryRoot.length() + 1 );
+    /**
+     * Compares the entry with its state recorded at the last successful build, and remembers the current state so that
+     * the {@code record-build} goal can record it.
+     */
+    private boolean isChangedSinceLastBuild( StatusHandler statusHandler ) {
+        Entry entry = statusHandler.entry;
+        String state = EntryResultCache.getConfig( entry ) + ';' + statusHandler.createBuildState();
+        String recordedState = null;
+        try {
+            recordedState = buildState.load( entry );
+        } catch ( IOException e ) {
+            logDebugWarning( format( "failed to load the build state of %s: %s", entry.getPath(), e.getMessage() ) );
+        }
+        buildState.addPendingState( project, entry, state );
+        boolean changed = recordedState == null || !recordedState.equals( state );
+        logDebugInfo( format( "  changed since last build = %s", changed ) );
+        if ( changed ) {
+            changedSinceLastBuild = true;
         }
+        return changed;
     }
 
 
+    private void setEntryProperties( Entry entry, Map<String, Object> properties, MetricsReport metricsReport ) {
+        setProjectProperties( entry.getPrefix(), properties );
+        if ( metricsReport != null ) {
+            metricsReport.add( entry, properties );
+        }
+    }
+
     private void setProjectProperties( String prefix, Map<String, Object> properties ) {
         logDebugInfo( "setting properties" );
         for ( Map.Entry<String, Object> entryProperty : properties.entrySet() ) {
@@ -225,187 +700,20 @@ public class RevisionMojo extends AbstractMojo {
     }
 
 
-    private void logDebugInfo( CharSequence message ) {
-        if ( verbose ) {
-            if ( getLog().isInfoEnabled() ) {
-                getLog().info( message );
-            }
-        } else {
-            if ( getLog().isDebugEnabled() ) {
-                getLog().debug( message );
-            }
+    /** Returns the log of the diagnostic messages, it is created on the first use because the log is set later. */
+    private synchronized DebugLog getDebugLog() {
+        if ( debugLog == null ) {
+            debugLog = new DebugLog( getLog(), verbose );
         }
+        return debugLog;
     }
 
-    private void logDebugWarning( CharSequence message ) {
-        if ( verbose ) {
-            if ( getLog().isWarnEnabled() ) {
-                getLog().warn( message );
-            }
-        } else {
-            if ( getLog().isDebugEnabled() ) {
-                getLog().debug( message );
-            }
-        }
+    private void logDebugInfo( CharSequence message ) {
+        getDebugLog().info( message );
     }
 
-
-    private final class StatusHandler implements ISvnObjectReceiver<SvnStatus> {
-
-        private final Entry entry;
-
-        private String repositoryRoot;
-
-        private String repositoryPath;
-
-        private long maximumRevision;
-
-        private long minimumRevision;
-
-        private long committedRevision;
-
-        private Date committedDate;
-
-        private Set<SVNStatusType> localStatusTypes;
-
-        private boolean outOfDate;
-
-
-        private StatusHandler( Entry entry ) {
-            if ( entry == null ) {
-                throw new IllegalArgumentException( "{entry} is null" );
-            }
-            this.entry = entry;
-            resetProperties();
-        }
-
-
-        public void receive( SvnTarget target, SvnStatus status ) throws SVNException {
-            if ( verbose && getLog().isDebugEnabled() ) {
-                getLog().debug( format( "  %s%s%s %s%s%s  %6s %6s %6s  %s (%s %s)",
-                        status.getNodeStatus().getCode(), status.getPropertiesStatus().getCode(), status.getTextStatus().getCode(),
-                        status.getRepositoryNodeStatus().getCode(), status.getRepositoryPropertiesStatus().getCode(), status.getRepositoryTextStatus().getCode(),
-                        status.getRevision(), status.getChangedRevision(), status.getRepositoryChangedRevision(),
-                        target.getPathOrUrlString(),
-                        status.getRepositoryRootUrl(), status.getRepositoryRelativePath()
-                ) );
-            }
-
-            if ( repositoryRoot == null ) {
-                repositoryRoot = status.getRepositoryRootUrl() == null ? "" : status.getRepositoryRootUrl().toString();
-                repositoryPath = status.getRepositoryRelativePath();
-            }
-
-            long targetRevision = status.getRevision();
-            if ( targetRevision >= 0L ) {
-                if ( maximumRevision < targetRevision ) {
-                    maximumRevision = targetRevision;
-                }
-                if ( targetRevision > 0L && minimumRevision > targetRevision ) {
-                    minimumRevision = targetRevision;
-                }
-            }
-            long targetCommittedRevision = status.getChangedRevision();
-            if ( targetCommittedRevision >= 0L && committedRevision < targetCommittedRevision ) {
-                committedRevision = targetCommittedRevision;
-                committedDate = status.getChangedDate();
-            }
-
-            localStatusTypes.add( status.getNodeStatus() );
-            if ( SVNStatusType.STATUS_NORMAL.equals( status.getNodeStatus() ) ) {
-                localStatusTypes.add( status.getPropertiesStatus() );
-            }
-
-            if ( status.getRepositoryChangedRevision() > targetCommittedRevision ) {
-                outOfDate = true;
-            }
-        }
-
-        public void resetProperties() {
-            resetProperties( false );
-        }
-
-        public void resetProperties( boolean forceUnversioned ) {
-            repositoryRoot = null;
-            repositoryPath = null;
-
-            maximumRevision = Long.MIN_VALUE;
-            minimumRevision = Long.MAX_VALUE;
-
-            committedRevision = Long.MIN_VALUE;
-            committedDate = null;
-
-            localStatusTypes = new HashSet<SVNStatusType>();
-            outOfDate = false;
-
-            if ( forceUnversioned ) {
-                localStatusTypes.add( SVNStatusType.STATUS_UNVERSIONED );
-            }
-        }
-
-        public Map<String, Object> createProperties() {
-            Map<String, Object> properties = new LinkedHashMap<String, Object>();
-            properties.put( "repository", repositoryRoot == null ? "" : repositoryRoot );
-            properties.put( "path", repositoryPath == null ? "" : repositoryPath );
-            properties.put( "revision", maximumRevision == Long.MIN_VALUE ? -1L : maximumRevision );
-            properties.put( "mixedRevisions", maximumRevision > 0L && minimumRevision > 0L && maximumRevision != minimumRevision );
-            properties.put( "committedRevision", committedRevision == Long.MIN_VALUE ? -1L : committedRevision );
-            properties.put( "committedDate", committedDate == null ? "" : format( Locale.ENGLISH, "%tF %<tT %<tz (%<ta, %<td %<tb %<tY)", committedDate ) );
-            properties.put( "status", createStatusString( EntryStatusSymbols.DEFAULT ) );
-            properties.put( "specialStatus", createStatusString( EntryStatusSymbols.SPECIAL ) );
-            return properties;
-        }
-
-        private String createStatusString( EntryStatusSymbols symbols ) {
-            StringBuilder status = new StringBuilder();
-
-            Set<SVNStatusType> statusTypes = new HashSet<SVNStatusType>( localStatusTypes );
-            statusTypes.remove( SVNStatusType.STATUS_NONE );
-            statusTypes.remove( SVNStatusType.STATUS_NORMAL );
-            if ( statusTypes.remove( SVNStatusType.STATUS_ADDED ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_ADDED ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_CONFLICTED ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_CONFLICTED ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_DELETED ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_DELETED ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_IGNORED ) && entry.reportIgnored() ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_IGNORED ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_MODIFIED ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_MODIFIED ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_REPLACED ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_REPLACED ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_EXTERNAL ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_EXTERNAL ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_UNVERSIONED ) && entry.reportUnversioned() ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_UNVERSIONED ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_MISSING ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_MISSING ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_INCOMPLETE ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_INCOMPLETE ) );
-            }
-            if ( statusTypes.remove( SVNStatusType.STATUS_OBSTRUCTED ) ) {
-                status.append( symbols.getStatusSymbol( SVNStatusType.STATUS_OBSTRUCTED ) );
-            }
-            if ( !statusTypes.isEmpty() && getLog().isWarnEnabled() ) {
-                getLog().warn( format( "the following svn statuses are not taken into account: %s", statusTypes ) );
-            }
-
-            if ( outOfDate && entry.reportOutOfDate() ) {
-                status.append( symbols.getOutOfDateSymbol() );
-            }
-
-            return status.toString();
-        }
-
+    private void logDebugWarning( CharSequence message ) {
+        getDebugLog().warning( message );
     }
 
 }
@@ -0,0 +1,120 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Starts to inspect the entries in a background thread, the output properties are set by the {@code revision-await}
+ * goal.
+ * <p/>
+ * The goal accepts the same configuration as the {@code revision} goal. The inspection overlaps with the phases
+ * between the two goals, so the {@code revision-await} goal should be bound to the last phase before the properties
+ * are used. If an entry could not be inspected then the error is reported by the {@code revision-await} goal.
+ *
+ * @goal revision-start
+ * @phase validate
+ * @threadSafe
+ * @requiresProject
+ */
+public class RevisionStartMojo extends RevisionMojo {
+
+    /** The inspections that were started but not awaited yet, by the project. */
+    private static final Map<MavenProject, PendingInspection> PENDING_INSPECTIONS = new WeakHashMap<MavenProject, PendingInspection>();
+
+
+    /**
+     * Waits for the inspection started for the project and sets the output properties.
+     *
+     * @param project the project
+     *
+     * @throws MojoExecutionException if the inspection was not started or some entry could not be inspected
+     */
+    static void awaitInspection( MavenProject project ) throws MojoExecutionException {
+        PendingInspection pendingInspection;
+        synchronized ( PENDING_INSPECTIONS ) {
+            pendingInspection = PENDING_INSPECTIONS.remove( project );
+        }
+        if ( pendingInspection == null ) {
+            throw new MojoExecutionException( "the revision-start goal was not executed for this project" );
+        }
+        pendingInspection.mojo.publishResults( getResult( pendingInspection.results ) );
+    }
+
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        prepareEntries();
+        ExecutorService executor = Executors.newSingleThreadExecutor( new ThreadFactory() {
+            public Thread newThread( Runnable runnable ) {
+                Thread thread = new Thread( runnable, "svn-revision-number-inspection" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+        try {
+            Future<Map<Entry, Map<String, Object>>> results = executor.submit( new Callable<Map<Entry, Map<String, Object>>>() {
+                public Map<Entry, Map<String, Object>> call() throws MojoExecutionException {
+                    return inspectEntries();
+                }
+            } );
+            synchronized ( PENDING_INSPECTIONS ) {
+                PENDING_INSPECTIONS.put( getProject(), new PendingInspection( this, results ) );
+            }
+        } finally {
+            // the submitted inspection still runs to completion
+            executor.shutdown();
+        }
+    }
+
+
+    /** The inspection running in the background together with the goal that publishes its results. */
+    private static final class PendingInspection {
+
+        private final RevisionMojo mojo;
+
+        private final Future<Map<Entry, Map<String, Object>>> results;
+
+
+        private PendingInspection( RevisionMojo mojo, Future<Map<Entry, Map<String, Object>>> results ) {
+            this.mojo = mojo;
+            this.results = results;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+
+import org.apache.maven.execution.MavenSession;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Takes the status of the entries from the working copy scans shared between the modules of the build.
+ * <p/>
+ * Only the entries that would be walked by a plain status walk of the whole subtree with the default modification
+ * check are taken from the shared scan, the other entries are inspected separately.
+ */
+final class SharedScanFiller {
+
+    private final EntryStatusFiller statusFiller;
+
+    private final DebugLog debugLog;
+
+    /** The build session whose scans are shared. */
+    private final MavenSession session;
+
+
+    /**
+     * Creates a new {@code SharedScanFiller} object.
+     *
+     * @param statusFiller the status filler that uses this strategy
+     * @param session the build session whose scans are shared
+     */
+    SharedScanFiller( EntryStatusFiller statusFiller, MavenSession session ) {
+        if ( statusFiller == null ) {
+            throw new IllegalArgumentException( "{statusFiller} is null" );
+        }
+        if ( session == null ) {
+            throw new IllegalArgumentException( "{session} is null" );
+        }
+        this.statusFiller = statusFiller;
+        debugLog = statusFiller.getDebugLog();
+        this.session = session;
+    }
+
+
+    /**
+     * Takes the status of the entry from the shared scan of its working copy, the working copy is scanned if it was
+     * not scanned yet in this build.
+     *
+     * @param entry the entry to inspect
+     * @param operationFactory the operation factory that scans the working copy
+     * @param statusHandler the status handler of the entry
+     *
+     * @return {@code true} if the status was taken from the shared scan, {@code false} if the entry should be
+     *         inspected separately
+     *
+     * @throws SVNException if the working copy root could not be found
+     */
+    boolean fill( Entry entry, SvnOperationFactory operationFactory, StatusHandler statusHandler ) throws SVNException {
+        if ( entry.hasPathFilter() || entry.scanExternals() || entry.tracksChanges() || !statusFiller.isSvnKitBackend( entry ) || !ModificationCheckContext.CONTENT.equals( entry.getModificationCheck() ) || !SVNDepth.INFINITY.equals( SVNDepth.fromString( entry.getDepth() ) ) || !entry.getPath().isDirectory() ) {
+            return false;
+        }
+        File workingCopyRoot = SvnOperationFactory.getWorkingCopyRoot( entry.getPath(), true );
+        if ( workingCopyRoot == null ) {
+            return false;
+        }
+        WorkingCopyScan workingCopyScan;
+        try {
+            workingCopyScan = WorkingCopyScanCache.getInstance( session ).getScan( workingCopyRoot, operationFactory, statusHandler.metrics.getSharedScans() );
+        } catch ( SVNException e ) {
+            debugLog.warning( format( "shared scan of %s failed, inspecting the entry separately: %s", workingCopyRoot, e.getMessage() ) );
+            return false;
+        }
+        WorkingCopyScan.Directory directory = workingCopyScan.getSubtree( entry.getPath() );
+        if ( directory == null ) {
+            return false;
+        }
+        debugLog.info( format( "  shared scan root = %s", workingCopyRoot ) );
+        statusHandler.repositoryRoot = directory.getRepositoryRoot();
+        statusHandler.repositoryPath = directory.getRepositoryPath();
+        statusHandler.aggregate.add( directory.getSubtree() );
+        return true;
+    }
+
+}
@@ -0,0 +1,440 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.tmatesoft.svn.core.wc.SVNStatusType;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+
+/** Accumulates the revision numbers and the local status types of a set of working copy nodes. */
+final class StatusAggregate {
+
+    /**
+     * The local status types that are tracked in the bit mask, the index in this array is the bit number. The same
+     * index is the stored value in the external form.
+     */
+    private static final SVNStatusType[] STATUS_TYPES = {
+            SVNStatusType.STATUS_NONE,
+            SVNStatusType.STATUS_NORMAL,
+            SVNStatusType.STATUS_MODIFIED,
+            SVNStatusType.STATUS_ADDED,
+            SVNStatusType.STATUS_DELETED,
+            SVNStatusType.STATUS_UNVERSIONED,
+            SVNStatusType.STATUS_MISSING,
+            SVNStatusType.STATUS_REPLACED,
+            SVNStatusType.STATUS_CONFLICTED,
+            SVNStatusType.STATUS_OBSTRUCTED,
+            SVNStatusType.STATUS_IGNORED,
+            SVNStatusType.STATUS_INCOMPLETE,
+            SVNStatusType.STATUS_EXTERNAL,
+            SVNStatusType.STATUS_NAME_CONFLICT,
+            SVNStatusType.STATUS_MERGED,
+    };
+
+    /** The status types from {@link #STATUS_TYPES} by their identifiers, used to check the identity of a lookup. */
+    private static final SVNStatusType[] STATUS_TYPES_BY_ID;
+
+    /** The bits of the status types from {@link #STATUS_TYPES} indexed by their identifiers. */
+    private static final int[] STATUS_TYPE_BITS_BY_ID;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    static {
+        int maximumId = 0;
+        for ( SVNStatusType statusType : STATUS_TYPES ) {
+            maximumId = Math.max( maximumId, statusType.getID() );
+        }
+        STATUS_TYPES_BY_ID = new SVNStatusType[ maximumId + 1 ];
+        STATUS_TYPE_BITS_BY_ID = new int[ maximumId + 1 ];
+        for ( int i = 0; i < STATUS_TYPES.length; i++ ) {
+            int id = STATUS_TYPES[ i ].getID();
+            if ( id >= 0 ) {
+                STATUS_TYPES_BY_ID[ id ] = STATUS_TYPES[ i ];
+                STATUS_TYPE_BITS_BY_ID[ id ] = 1 << i;
+            }
+        }
+    }
+
+    private long maximumRevision;
+
+    private long minimumRevision;
+
+    private long committedRevision;
+
+    private Date committedDate;
+
+    /** The bit mask of the local status types, see {@link #statusTypeBit(SVNStatusType)}. */
+    private int localStatusTypes;
+
+    /** The local status types that have no bit in the mask, {@code null} until the first such type is added. */
+    private Set<SVNStatusType> otherStatusTypes;
+
+    private boolean outOfDate;
+
+    /**
+     * The sum of the hashes of the paths, statuses, sizes and modification times of the versioned nodes with local
+     * changes. The sum does not depend on the order of the nodes, so the aggregates of the subtrees can be combined.
+     */
+    private long changedNodes;
+
+    /** The sum of the hashes of the paths of the unversioned nodes. */
+    private long unversionedNodes;
+
+    /** The sum of the hashes of the paths of the ignored nodes. */
+    private long ignoredNodes;
+
+    /** Whether the nodes with local changes are hashed, which is needed only to compare them with the last build. */
+    private boolean hashLocalChanges;
+
+
+    /** Creates a new empty {@code StatusAggregate} object. */
+    StatusAggregate() {
+        reset();
+    }
+
+
+    /**
+     * Makes this aggregate hash the nodes with local changes that are added later, see
+     * {@link #getLocalChangesHash(boolean, boolean)}. The nodes are not hashed by default because the hash costs a
+     * string and, for a changed file, the file size and modification time for every such node.
+     */
+    void hashLocalChanges() {
+        hashLocalChanges = true;
+    }
+
+    /** Returns this aggregate to the empty state. */
+    void reset() {
+        maximumRevision = Long.MIN_VALUE;
+        minimumRevision = Long.MAX_VALUE;
+
+        committedRevision = Long.MIN_VALUE;
+        committedDate = null;
+
+        localStatusTypes = 0;
+        otherStatusTypes = null;
+        outOfDate = false;
+
+        changedNodes = 0L;
+        unversionedNodes = 0L;
+        ignoredNodes = 0L;
+    }
+
+    /**
+     * Adds the status of a single working copy node to this aggregate.
+     *
+     * @param status the node status
+     */
+    void add( SvnStatus status ) {
+        addRevisions( status.getRevision(), status.getChangedRevision(), status.getChangedDate() );
+
+        SVNStatusType nodeStatus = status.getNodeStatus();
+        addStatusType( nodeStatus );
+        if ( nodeStatus == SVNStatusType.STATUS_NORMAL ) {
+            addStatusType( status.getPropertiesStatus() );
+        }
+
+        if ( status.getRepositoryChangedRevision() > status.getChangedRevision() ) {
+            outOfDate = true;
+        }
+
+        if ( hashLocalChanges ) {
+            addNodeHash( status );
+        }
+    }
+
+    private void addNodeHash( SvnStatus status ) {
+        File path = status.getPath();
+        if ( path == null ) {
+            return;
+        }
+        SVNStatusType nodeStatus = status.getNodeStatus();
+        if ( nodeStatus == SVNStatusType.STATUS_UNVERSIONED ) {
+            unversionedNodes += hash( FNV_OFFSET_BASIS, path.getAbsolutePath() );
+        } else if ( nodeStatus == SVNStatusType.STATUS_IGNORED ) {
+            ignoredNodes += hash( FNV_OFFSET_BASIS, path.getAbsolutePath() );
+        } else if ( nodeStatus != SVNStatusType.STATUS_NORMAL && nodeStatus != SVNStatusType.STATUS_NONE && nodeStatus != SVNStatusType.STATUS_EXTERNAL
+                || status.getPropertiesStatus() == SVNStatusType.STATUS_MODIFIED || status.getPropertiesStatus() == SVNStatusType.STATUS_CONFLICTED ) {
+            long hash = hash( FNV_OFFSET_BASIS, path.getAbsolutePath() );
+            hash = hash( hash, nodeStatus.getCode() );
+            hash = hash( hash, status.getPropertiesStatus().getCode() );
+            if ( path.isFile() ) {
+                hash = hash( hash, path.length() );
+                hash = hash( hash, path.lastModified() );
+            }
+            changedNodes += hash;
+        }
+    }
+
+    /** Mixes the characters of the value into the 64-bit FNV-1a hash. */
+    private static long hash( long hash, String value ) {
+        for ( int i = 0; i < value.length(); i++ ) {
+            hash = hash( hash, value.charAt( i ) );
+        }
+        return hash( hash, '\u0000' );
+    }
+
+    private static long hash( long hash, char value ) {
+        hash = ( hash ^ ( value & 0xFF ) ) * FNV_PRIME;
+        return ( hash ^ ( value >>> 8 ) ) * FNV_PRIME;
+    }
+
+    private static long hash( long hash, long value ) {
+        for ( int i = 0; i < 64; i += 8 ) {
+            hash = ( hash ^ ( value >>> i & 0xFFL ) ) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Adds the revision numbers of a single working copy node without changing the status types.
+     *
+     * @param revision the node revision, or a negative number if the node has no revision
+     * @param changedRevision the revision when the node was last changed, or a negative number if unknown
+     * @param changedDate the date when the node was last changed
+     */
+    void addRevisions( long revision, long changedRevision, Date changedDate ) {
+        if ( revision >= 0L ) {
+            if ( maximumRevision < revision ) {
+                maximumRevision = revision;
+            }
+            if ( revision > 0L && minimumRevision > revision ) {
+                minimumRevision = revision;
+            }
+        }
+        if ( changedRevision >= 0L && committedRevision < changedRevision ) {
+            committedRevision = changedRevision;
+            committedDate = changedDate;
+        }
+    }
+
+    /**
+     * Adds all the nodes accumulated by another aggregate to this aggregate.
+     *
+     * @param other the aggregate to add
+     */
+    void add( StatusAggregate other ) {
+        if ( maximumRevision < other.maximumRevision ) {
+            maximumRevision = other.maximumRevision;
+        }
+        if ( minimumRevision > other.minimumRevision ) {
+            minimumRevision = other.minimumRevision;
+        }
+        if ( committedRevision < other.committedRevision ) {
+            committedRevision = other.committedRevision;
+            committedDate = other.committedDate;
+        }
+        localStatusTypes |= other.localStatusTypes;
+        if ( other.otherStatusTypes != null ) {
+            for ( SVNStatusType statusType : other.otherStatusTypes ) {
+                addStatusType( statusType );
+            }
+        }
+        outOfDate |= other.outOfDate;
+        changedNodes += other.changedNodes;
+        unversionedNodes += other.unversionedNodes;
+        ignoredNodes += other.ignoredNodes;
+    }
+
+    /** Marks this aggregate as containing a node that was changed in the remote repository. */
+    void addOutOfDate() {
+        outOfDate = true;
+    }
+
+    /**
+     * Adds the status type without changing the revision numbers.
+     *
+     * @param statusType the status type to add
+     */
+    void addStatusType( SVNStatusType statusType ) {
+        int bit = statusTypeBit( statusType );
+        if ( bit != 0 ) {
+            localStatusTypes |= bit;
+        } else {
+            if ( otherStatusTypes == null ) {
+                otherStatusTypes = new LinkedHashSet<SVNStatusType>();
+            }
+            otherStatusTypes.add( statusType );
+        }
+    }
+
+    /**
+     * Returns the bit that represents the status type in the {@link #getLocalStatusTypes()} mask.
+     *
+     * @param statusType the status type
+     *
+     * @return the status type bit, or {@code 0} if the status type has no bit
+     */
+    static int statusTypeBit( SVNStatusType statusType ) {
+        int id = statusType.getID();
+        if ( id >= 0 && id < STATUS_TYPES_BY_ID.length && STATUS_TYPES_BY_ID[ id ] == statusType ) {
+            return STATUS_TYPE_BITS_BY_ID[ id ];
+        }
+        for ( int i = 0; i < STATUS_TYPES.length; i++ ) {
+            if ( STATUS_TYPES[ i ] == statusType ) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * Returns the string form of this aggregate that can be parsed back by the {@link #fromExternalForm(String)}.
+     *
+     * @return the external form
+     */
+    String toExternalForm() {
+        StringBuilder statusTypes = new StringBuilder();
+        for ( int i = 0; i < STATUS_TYPES.length; i++ ) {
+            if ( ( localStatusTypes & 1 << i ) != 0 ) {
+                if ( statusTypes.length() > 0 ) {
+                    statusTypes.append( ',' );
+                }
+                statusTypes.append( i );
+            }
+        }
+        return maximumRevision + ";" + minimumRevision + ";" + committedRevision + ";"
+                + ( committedDate == null ? "" : String.valueOf( committedDate.getTime() ) ) + ";"
+                + statusTypes + ";" + outOfDate + ";"
+                + changedNodes + ";" + unversionedNodes + ";" + ignoredNodes;
+    }
+
+    /**
+     * Parses the aggregate from the string created by the {@link #toExternalForm()}.
+     *
+     * @param externalForm the external form
+     *
+     * @return the parsed aggregate
+     *
+     * @throws IllegalArgumentException if the string is not a valid external form
+     */
+    static StatusAggregate fromExternalForm( String externalForm ) {
+        String[] fields = externalForm.split( ";", -1 );
+        if ( fields.length != 9 ) {
+            throw new IllegalArgumentException( "invalid aggregate: " + externalForm );
+        }
+        StatusAggregate aggregate = new StatusAggregate();
+        aggregate.maximumRevision = Long.parseLong( fields[ 0 ] );
+        aggregate.minimumRevision = Long.parseLong( fields[ 1 ] );
+        aggregate.committedRevision = Long.parseLong( fields[ 2 ] );
+        aggregate.committedDate = fields[ 3 ].length() == 0 ? null : new Date( Long.parseLong( fields[ 3 ] ) );
+        if ( fields[ 4 ].length() > 0 ) {
+            for ( String index : fields[ 4 ].split( "," ) ) {
+                int statusTypeIndex = Integer.parseInt( index );
+                if ( statusTypeIndex < 0 || statusTypeIndex >= STATUS_TYPES.length ) {
+                    throw new IllegalArgumentException( "invalid aggregate: " + externalForm );
+                }
+                aggregate.localStatusTypes |= 1 << statusTypeIndex;
+            }
+        }
+        aggregate.outOfDate = Boolean.parseBoolean( fields[ 5 ] );
+        aggregate.changedNodes = Long.parseLong( fields[ 6 ] );
+        aggregate.unversionedNodes = Long.parseLong( fields[ 7 ] );
+        aggregate.ignoredNodes = Long.parseLong( fields[ 8 ] );
+        return aggregate;
+    }
+
+
+    long getMaximumRevision() {
+        return maximumRevision;
+    }
+
+    long getMinimumRevision() {
+        return minimumRevision;
+    }
+
+    long getCommittedRevision() {
+        return committedRevision;
+    }
+
+    Date getCommittedDate() {
+        return committedDate;
+    }
+
+    /**
+     * Returns the bit mask of the local status types, the bit of a status type is returned by the
+     * {@link #statusTypeBit(SVNStatusType)}.
+     *
+     * @return the local status types mask
+     */
+    int getLocalStatusTypes() {
+        return localStatusTypes;
+    }
+
+    /**
+     * Returns the local status types that are either in the mask or have no bit at all.
+     *
+     * @param mask the bit mask of the status types to return
+     *
+     * @return the status types
+     */
+    Set<SVNStatusType> getLocalStatusTypes( int mask ) {
+        Set<SVNStatusType> statusTypes = new LinkedHashSet<SVNStatusType>();
+        for ( int i = 0; i < STATUS_TYPES.length; i++ ) {
+            if ( ( localStatusTypes & mask & 1 << i ) != 0 ) {
+                statusTypes.add( STATUS_TYPES[ i ] );
+            }
+        }
+        if ( otherStatusTypes != null ) {
+            statusTypes.addAll( otherStatusTypes );
+        }
+        return statusTypes;
+    }
+
+    /**
+     * Checks whether this aggregate contains the local status types that have no bit in the mask.
+     *
+     * @return {@code true} if there are such status types
+     */
+    boolean hasOtherStatusTypes() {
+        return otherStatusTypes != null;
+    }
+
+    boolean isOutOfDate() {
+        return outOfDate;
+    }
+
+    /**
+     * Returns the combined hash of the nodes with local changes, which changes whenever such a node is added or
+     * removed, changes its status, or, for a file, changes its size or modification time.
+     *
+     * @param unversioned whether the unversioned nodes should be included
+     * @param ignored whether the ignored nodes should be included
+     *
+     * @return the combined hash
+     */
+    long getLocalChangesHash( boolean unversioned, boolean ignored ) {
+        return changedNodes + ( unversioned ? unversionedNodes : 0L ) + ( ignored ? ignoredNodes : 0L );
+    }
+
+}
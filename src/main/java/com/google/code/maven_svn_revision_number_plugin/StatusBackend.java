@@ -0,0 +1,75 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnInfo;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+
+/**
+ * Reads the local status and the repository location of the working copy nodes. The default backend uses svnkit, the
+ * other backends may delegate to a different Subversion client.
+ */
+interface StatusBackend {
+
+    /** The backend that uses svnkit. */
+    String SVNKIT = "svnkit";
+
+    /** The backend that runs the native {@code svn} command line client. */
+    String SVN = "svn";
+
+
+    /**
+     * Reports the local status of the working copy nodes.
+     *
+     * @param path the path to walk
+     * @param depth the walk depth
+     * @param reportAll whether the unmodified nodes should be reported
+     * @param reportIgnored whether the ignored nodes should be reported
+     * @param reportExternals whether the external working copies should be walked
+     * @param receiver the receiver of the node statuses
+     *
+     * @throws SVNException if the status cannot be obtained
+     */
+    void status( File path, SVNDepth depth, boolean reportAll, boolean reportIgnored, boolean reportExternals, ISvnObjectReceiver<SvnStatus> receiver ) throws SVNException;
+
+    /**
+     * Returns the information about the working copy node, only the repository root and the node URL are required.
+     *
+     * @param path the node path
+     *
+     * @return the node information
+     *
+     * @throws SVNException if the information cannot be obtained
+     */
+    SvnInfo info( File path ) throws SVNException;
+
+}
@@ -0,0 +1,396 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.logging.Log;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+import static java.lang.String.format;
+
+/**
+ * Collects the status of the nodes reported by the walks of an entry and creates the output properties of the entry.
+ * <p/>
+ * The handler is filled by one of the fill strategies of {@link EntryStatusFiller}.
+ */
+final class StatusHandler implements ISvnObjectReceiver<SvnStatus> {
+
+    /** The status types of the unchanged nodes, they are not represented in the status string. */
+    private static final int UNCHANGED_STATUS_TYPES = StatusAggregate.statusTypeBit( SVNStatusType.STATUS_NONE )
+            | StatusAggregate.statusTypeBit( SVNStatusType.STATUS_NORMAL );
+
+
+    final Entry entry;
+
+    private final Log log;
+
+    /** Whether each received status is logged, checked once instead of for every node. */
+    private final boolean traceStatus;
+
+    /** The status types that are represented in the status string of the entry. */
+    private final int reportedStatusTypes;
+
+    String repositoryRoot;
+
+    String repositoryPath;
+
+    final StatusAggregate aggregate = new StatusAggregate();
+
+    final EntryMetrics metrics = new EntryMetrics();
+
+    long receivedNodes;
+
+    /** The absolute path of the entry, used to find the nodes that belong to it when it is nested. */
+    final String entryPath;
+
+    /** The include and exclude patterns of the entry, {@code null} if there are none. */
+    final PathFilter pathFilter;
+
+    /** The external working copies found by the walk, {@code null} if the externals are not scanned separately. */
+    final List<File> externalPaths;
+
+    /** The handlers of the scanned externals by their paths relative to the entry path. */
+    final Map<String, StatusHandler> externalHandlers = new TreeMap<String, StatusHandler>();
+
+    /** The handlers of the entries nested in this entry, {@code null} if there are none. */
+    private List<StatusHandler> nestedHandlers;
+
+    /** The first status received for the entry path itself. */
+    private SVNStatusType entryNodeStatus;
+
+    private String childPrefix;
+
+    StatusAggregate self;
+
+    Map<String, StatusAggregate> children;
+
+    /** The layout recorded for the result cache by the names of the items immediately below the entry. */
+    Map<String, StringBuilder> layouts;
+
+
+    /**
+     * Creates a new {@code StatusHandler} object.
+     *
+     * @param entry the entry whose status is collected
+     * @param debugLog the log of the diagnostic messages
+     */
+    StatusHandler( Entry entry, DebugLog debugLog ) {
+        if ( entry == null ) {
+            throw new IllegalArgumentException( "{entry} is null" );
+        }
+        if ( debugLog == null ) {
+            throw new IllegalArgumentException( "{debugLog} is null" );
+        }
+        this.entry = entry;
+        log = debugLog.getLog();
+        entryPath = entry.getPath().getAbsolutePath();
+        pathFilter = PathFilter.create( entry.getIncludes(), entry.getExcludes() );
+        externalPaths = entry.scanExternals() ? new ArrayList<File>() : null;
+        if ( entry.tracksChanges() ) {
+            aggregate.hashLocalChanges();
+        }
+        traceStatus = debugLog.isVerbose() && log.isDebugEnabled();
+        int statusTypes = ~0;
+        if ( !entry.reportIgnored() ) {
+            statusTypes &= ~StatusAggregate.statusTypeBit( SVNStatusType.STATUS_IGNORED );
+        }
+        if ( !entry.reportUnversioned() ) {
+            statusTypes &= ~StatusAggregate.statusTypeBit( SVNStatusType.STATUS_UNVERSIONED );
+        }
+        reportedStatusTypes = statusTypes;
+        resetProperties();
+    }
+
+
+    public void receive( SvnTarget target, SvnStatus status ) throws SVNException {
+        if ( traceStatus ) {
+            log.debug( format( "  %s%s%s %s%s%s  %6s %6s %6s  %s (%s %s)",
+                    status.getNodeStatus().getCode(), status.getPropertiesStatus().getCode(), status.getTextStatus().getCode(),
+                    status.getRepositoryNodeStatus().getCode(), status.getRepositoryPropertiesStatus().getCode(), status.getRepositoryTextStatus().getCode(),
+                    status.getRevision(), status.getChangedRevision(), status.getRepositoryChangedRevision(),
+                    target.getPathOrUrlString(),
+                    status.getRepositoryRootUrl(), status.getRepositoryRelativePath()
+            ) );
+        }
+
+        if ( layouts != null ) {
+            trackLayout( target, status );
+        }
+
+        if ( pathFilter != null && !pathFilter.accepts( getRelativePath( target.getFile().getAbsolutePath() ) ) ) {
+            metrics.addExcludedNode();
+            return;
+        }
+
+        if ( repositoryRoot == null ) {
+            repositoryRoot = status.getRepositoryRootUrl() == null ? "" : status.getRepositoryRootUrl().toString();
+            repositoryPath = status.getRepositoryRelativePath();
+        }
+
+        receivedNodes++;
+        aggregate.add( status );
+        if ( isScannedExternal( status ) && !target.getFile().getAbsolutePath().equals( entryPath ) ) {
+            externalPaths.add( target.getFile() );
+        }
+        if ( children != null ) {
+            trackChild( target, status );
+        }
+
+        if ( nestedHandlers != null ) {
+            String path = target.getFile().getAbsolutePath();
+            for ( StatusHandler nestedHandler : nestedHandlers ) {
+                if ( nestedHandler.contains( path ) ) {
+                    if ( nestedHandler.entryNodeStatus == null && path.length() == nestedHandler.entryPath.length() ) {
+                        nestedHandler.entryNodeStatus = status.getNodeStatus();
+                    }
+                    nestedHandler.receive( target, status );
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the entry as out-of-date if any of the out-of-date nodes belongs to it.
+     *
+     * @param outOfDatePaths the absolute paths of the nodes changed in the remote repository
+     */
+    public void addOutOfDatePaths( List<String> outOfDatePaths ) {
+        for ( String path : outOfDatePaths ) {
+            if ( contains( path ) && ( pathFilter == null || pathFilter.accepts( getRelativePath( path ) ) ) ) {
+                aggregate.addOutOfDate();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Marks the entry as out-of-date if the entry location was changed in the remote repository after the committed
+     * revision of the entry.
+     *
+     * @param headRevision the last changed revision of the entry location in the HEAD revision
+     */
+    public void addHeadRevision( long headRevision ) {
+        if ( headRevision > aggregate.getCommittedRevision() ) {
+            aggregate.addOutOfDate();
+        }
+    }
+
+    /**
+     * Makes this handler pass the statuses of the nodes below the nested entry path to the nested handler.
+     *
+     * @param nestedHandler the handler of the nested entry
+     */
+    public void addNestedHandler( StatusHandler nestedHandler ) {
+        if ( nestedHandlers == null ) {
+            nestedHandlers = new ArrayList<StatusHandler>();
+        }
+        nestedHandlers.add( nestedHandler );
+    }
+
+    private boolean contains( String path ) {
+        return path.startsWith( entryPath ) && ( path.length() == entryPath.length() || path.charAt( entryPath.length() ) == File.separatorChar );
+    }
+
+    /** Checks whether the node is an external working copy that is scanned separately from the walk of the entry. */
+    boolean isScannedExternal( SvnStatus status ) {
+        return externalPaths != null && SVNStatusType.STATUS_EXTERNAL.equals( status.getNodeStatus() );
+    }
+
+    /** Returns the path of the node below the entry path relative to the entry path with the {@code /} separator. */
+    String getRelativePath( String path ) {
+        return path.length() <= entryPath.length() ? "" : path.substring( entryPath.length() + 1 ).replace( File.separatorChar, '/' );
+    }
+
+    /**
+     * Checks whether the walk of the outer entry reported the nested entry the same way as the walk of the nested entry
+     * itself would, that is whether the entry path was reported as a versioned node that is not an external.
+     *
+     * @return {@code true} if the nested entry status is complete
+     */
+    public boolean isCoveredByWalk() {
+        return entryNodeStatus != null
+                && !SVNStatusType.STATUS_NONE.equals( entryNodeStatus )
+                && !SVNStatusType.STATUS_UNVERSIONED.equals( entryNodeStatus )
+                && !SVNStatusType.STATUS_IGNORED.equals( entryNodeStatus )
+                && !SVNStatusType.STATUS_EXTERNAL.equals( entryNodeStatus )
+                && !SVNStatusType.STATUS_MISSING.equals( entryNodeStatus )
+                && !SVNStatusType.STATUS_OBSTRUCTED.equals( entryNodeStatus );
+    }
+
+    /** Starts to aggregate the status of the entry itself and of each item immediately below it separately. */
+    public void trackChildren() {
+        childPrefix = entry.getPath().getAbsolutePath() + File.separator;
+        self = createAggregate();
+        children = new HashMap<String, StatusAggregate>();
+        layouts = new HashMap<String, StringBuilder>();
+    }
+
+    private StatusAggregate createAggregate() {
+        StatusAggregate childAggregate = new StatusAggregate();
+        if ( entry.tracksChanges() ) {
+            childAggregate.hashLocalChanges();
+        }
+        return childAggregate;
+    }
+
+    /** Replaces the entry status with the combination of the separately aggregated statuses. */
+    public void combineChildren() {
+        aggregate.reset();
+        aggregate.add( self );
+        for ( StatusAggregate child : children.values() ) {
+            aggregate.add( child );
+        }
+    }
+
+    private void trackChild( SvnTarget target, SvnStatus status ) {
+        String path = target.getFile().getAbsolutePath();
+        if ( !path.startsWith( childPrefix ) ) {
+            self.add( status );
+            return;
+        }
+        int nameEnd = path.indexOf( File.separatorChar, childPrefix.length() );
+        String name = nameEnd < 0 ? path.substring( childPrefix.length() ) : path.substring( childPrefix.length(), nameEnd );
+        StatusAggregate child = children.get( name );
+        if ( child == null ) {
+            child = createAggregate();
+            children.put( name, child );
+        }
+        child.add( status );
+    }
+
+    /**
+     * Records the node in the layout of the item immediately below the entry it belongs to. The nodes that are only
+     * not included by the patterns are recorded too because adding an included file changes the item names of their
+     * directories, while the excluded nodes do not matter.
+     */
+    private void trackLayout( SvnTarget target, SvnStatus status ) {
+        File file = target.getFile();
+        String path = file.getAbsolutePath();
+        if ( !path.startsWith( childPrefix ) ) {
+            return;
+        }
+        String relativePath = getRelativePath( path );
+        if ( pathFilter != null && pathFilter.isExcluded( relativePath ) ) {
+            return;
+        }
+        char kind = EntryResultCache.getLayoutKind( file, status );
+        if ( kind == 0 ) {
+            return;
+        }
+        int nameEnd = relativePath.indexOf( '/' );
+        String name = nameEnd < 0 ? relativePath : relativePath.substring( 0, nameEnd );
+        StringBuilder layout = layouts.get( name );
+        if ( layout == null ) {
+            layout = new StringBuilder();
+            layouts.put( name, layout );
+        } else if ( layout.length() > 0 ) {
+            layout.append( '\n' );
+        }
+        layout.append( kind ).append( relativePath );
+    }
+
+    public void resetProperties() {
+        resetProperties( false );
+    }
+
+    public void resetProperties( boolean forceUnversioned ) {
+        repositoryRoot = null;
+        repositoryPath = null;
+
+        aggregate.reset();
+
+        if ( forceUnversioned ) {
+            aggregate.addStatusType( SVNStatusType.STATUS_UNVERSIONED );
+        }
+    }
+
+    public Map<String, Object> createProperties() {
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put( "repository", repositoryRoot == null ? "" : repositoryRoot );
+        properties.put( "path", repositoryPath == null ? "" : repositoryPath );
+        long maximumRevision = aggregate.getMaximumRevision();
+        long minimumRevision = aggregate.getMinimumRevision();
+        long committedRevision = aggregate.getCommittedRevision();
+        properties.put( "revision", maximumRevision == Long.MIN_VALUE ? -1L : maximumRevision );
+        properties.put( "mixedRevisions", maximumRevision > 0L && minimumRevision > 0L && maximumRevision != minimumRevision );
+        properties.put( "committedRevision", committedRevision == Long.MIN_VALUE ? -1L : committedRevision );
+        properties.put( "committedDate", aggregate.getCommittedDate() == null ? "" : format( Locale.ENGLISH, "%tF %<tT %<tz (%<ta, %<td %<tb %<tY)", aggregate.getCommittedDate() ) );
+        properties.put( "status", createStatusString( EntryStatusSymbols.DEFAULT ) );
+        properties.put( "specialStatus", createStatusString( EntryStatusSymbols.SPECIAL ) );
+        return properties;
+    }
+
+    /**
+     * Returns the state of the entry that is compared with the one recorded at the last successful build, that is the
+     * last committed revision and the hash of the reported items with local changes. The revision of the working copy
+     * is not included because an update of an unrelated path changes it too.
+     */
+    String createBuildState() {
+        long localChanges = aggregate.getLocalChangesHash(
+                ( reportedStatusTypes & StatusAggregate.statusTypeBit( SVNStatusType.STATUS_UNVERSIONED ) ) != 0,
+                ( reportedStatusTypes & StatusAggregate.statusTypeBit( SVNStatusType.STATUS_IGNORED ) ) != 0 );
+        return aggregate.getCommittedRevision() + ";" + Long.toHexString( localChanges );
+    }
+
+    String createStatusString( EntryStatusSymbols symbols ) {
+        StringBuilder status = new StringBuilder();
+
+        int statusTypes = aggregate.getLocalStatusTypes() & ~UNCHANGED_STATUS_TYPES;
+        char[] reportedSymbols = symbols.getReportedStatusSymbols();
+        for ( int i = 0; i < reportedSymbols.length; i++ ) {
+            int statusTypeBit = EntryStatusSymbols.REPORTED_STATUS_TYPE_BITS[ i ];
+            if ( ( statusTypes & statusTypeBit ) != 0 ) {
+                statusTypes &= ~statusTypeBit;
+                if ( ( reportedStatusTypes & statusTypeBit ) != 0 ) {
+                    status.append( reportedSymbols[ i ] );
+                }
+            }
+        }
+        if ( ( statusTypes != 0 || aggregate.hasOtherStatusTypes() ) && log.isWarnEnabled() ) {
+            log.warn( format( "the following svn statuses are not taken into account: %s", aggregate.getLocalStatusTypes( statusTypes ) ) );
+        }
+
+        if ( aggregate.isOutOfDate() && entry.reportOutOfDate() ) {
+            status.append( symbols.getOutOfDateSymbol() );
+        }
+
+        return status.toString();
+    }
+
+}
@@ -0,0 +1,449 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.util.SVNDate;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnInfo;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * The backend that runs the native {@code svn} command line client and parses its XML output. The output is parsed
+ * while the client is running and every node status is passed to the receiver as soon as it is read.
+ */
+final class SvnCommandBackend implements StatusBackend {
+
+    /** The results of the availability checks of the executables. */
+    private static final Map<String, Boolean> AVAILABLE_EXECUTABLES = new HashMap<String, Boolean>();
+
+    /** The status types by the values of the {@code item} and {@code props} attributes. */
+    private static final Map<String, SVNStatusType> STATUS_TYPES = new HashMap<String, SVNStatusType>();
+
+    static {
+        STATUS_TYPES.put( "none", SVNStatusType.STATUS_NONE );
+        STATUS_TYPES.put( "normal", SVNStatusType.STATUS_NORMAL );
+        STATUS_TYPES.put( "added", SVNStatusType.STATUS_ADDED );
+        STATUS_TYPES.put( "missing", SVNStatusType.STATUS_MISSING );
+        STATUS_TYPES.put( "incomplete", SVNStatusType.STATUS_INCOMPLETE );
+        STATUS_TYPES.put( "deleted", SVNStatusType.STATUS_DELETED );
+        STATUS_TYPES.put( "replaced", SVNStatusType.STATUS_REPLACED );
+        STATUS_TYPES.put( "modified", SVNStatusType.STATUS_MODIFIED );
+        STATUS_TYPES.put( "conflicted", SVNStatusType.STATUS_CONFLICTED );
+        STATUS_TYPES.put( "obstructed", SVNStatusType.STATUS_OBSTRUCTED );
+        STATUS_TYPES.put( "ignored", SVNStatusType.STATUS_IGNORED );
+        STATUS_TYPES.put( "external", SVNStatusType.STATUS_EXTERNAL );
+        STATUS_TYPES.put( "unversioned", SVNStatusType.STATUS_UNVERSIONED );
+    }
+
+    /** The maximum number of characters of the error output that are kept for the error message. */
+    private static final int MAXIMUM_ERROR_LENGTH = 4096;
+
+    /** The error and warning codes reported by the client for a path that is not a working copy. */
+    private static final String[] NOT_WORKING_COPY_CODES = { "E155007", "W155007" };
+
+
+    /**
+     * Checks whether the executable can be run. The result of the check is remembered for the lifetime of the class.
+     *
+     * @param executable the {@code svn} executable
+     *
+     * @return {@code true} if the executable is available
+     */
+    static boolean isAvailable( String executable ) {
+        synchronized ( AVAILABLE_EXECUTABLES ) {
+            Boolean available = AVAILABLE_EXECUTABLES.get( executable );
+            if ( available == null ) {
+                available = checkAvailable( executable );
+                AVAILABLE_EXECUTABLES.put( executable, available );
+            }
+            return available;
+        }
+    }
+
+    private static boolean checkAvailable( String executable ) {
+        try {
+            Process process = new ProcessBuilder( executable, "--version", "--quiet" ).redirectErrorStream( true ).start();
+            try {
+                process.getOutputStream().close();
+                readText( process.getInputStream() );
+                return process.waitFor() == 0;
+            } finally {
+                process.destroy();
+            }
+        } catch ( IOException e ) {
+            return false;
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+
+    private final String executable;
+
+
+    /**
+     * Creates a new {@code SvnCommandBackend} object.
+     *
+     * @param executable the {@code svn} executable
+     */
+    SvnCommandBackend( String executable ) {
+        if ( executable == null ) {
+            throw new IllegalArgumentException( "{executable} is null" );
+        }
+        this.executable = executable;
+    }
+
+
+    public void status( File path, SVNDepth depth, boolean reportAll, boolean reportIgnored, boolean reportExternals, ISvnObjectReceiver<SvnStatus> receiver ) throws SVNException {
+        List<String> command = new ArrayList<String>();
+        command.add( executable );
+        command.add( "status" );
+        command.add( "--xml" );
+        command.add( "--non-interactive" );
+        command.add( "--depth" );
+        command.add( depth.getName() );
+        if ( reportAll ) {
+            command.add( "-v" );
+        }
+        if ( reportIgnored ) {
+            command.add( "--no-ignore" );
+        }
+        if ( !reportExternals ) {
+            command.add( "--ignore-externals" );
+        }
+        command.add( path.getAbsolutePath() );
+        run( command, new StatusParser( receiver ) );
+    }
+
+    public SvnInfo info( File path ) throws SVNException {
+        List<String> command = new ArrayList<String>();
+        command.add( executable );
+        command.add( "info" );
+        command.add( "--xml" );
+        command.add( "--non-interactive" );
+        command.add( path.getAbsolutePath() );
+        InfoParser parser = new InfoParser();
+        run( command, parser );
+        if ( parser.info == null || parser.info.getUrl() == null || parser.info.getRepositoryRootUrl() == null ) {
+            throw new SVNException( SVNErrorMessage.create( SVNErrorCode.EXTERNAL_PROGRAM, "{0} reported no repository location for {1}", executable, path ) );
+        }
+        return parser.info;
+    }
+
+    private void run( List<String> command, DefaultHandler handler ) throws SVNException {
+        Process process;
+        try {
+            process = new ProcessBuilder( command ).start();
+        } catch ( IOException e ) {
+            throw new SVNException( SVNErrorMessage.create( SVNErrorCode.EXTERNAL_PROGRAM, "failed to run {0}: {1}", command, e.getMessage() ), e );
+        }
+        try {
+            ErrorReader errorReader = new ErrorReader( process.getErrorStream() );
+            errorReader.start();
+            String parseError = null;
+            InputStream output = process.getInputStream();
+            try {
+                process.getOutputStream().close();
+                SAXParserFactory.newInstance().newSAXParser().parse( output, handler );
+            } catch ( SAXException e ) {
+                if ( e.getException() instanceof SVNException ) {
+                    throw (SVNException) e.getException();
+                }
+                parseError = e.getMessage();
+            } catch ( ParserConfigurationException e ) {
+                parseError = e.getMessage();
+            } catch ( IOException e ) {
+                parseError = e.getMessage();
+            }
+            if ( parseError != null ) {
+                // the rest of the output is read so that the process does not block on a full pipe
+                try {
+                    readText( output );
+                } catch ( IOException e ) {
+                    // the parser closed the output, so the process cannot block on it either
+                }
+            }
+            int exitCode = process.waitFor();
+            errorReader.join();
+            String errorText = errorReader.getText().trim();
+            for ( String code : NOT_WORKING_COPY_CODES ) {
+                if ( errorText.indexOf( code ) >= 0 ) {
+                    throw new SVNException( SVNErrorMessage.create( SVNErrorCode.WC_NOT_WORKING_COPY, "{0}", errorText ) );
+                }
+            }
+            // the client killed by the closed output after a parse error reports nothing on its own
+            if ( exitCode != 0 && ( parseError == null || errorText.length() > 0 ) ) {
+                throw new SVNException( SVNErrorMessage.create( SVNErrorCode.EXTERNAL_PROGRAM, "{0} failed with exit code {1}: {2}", command, exitCode, errorText ) );
+            }
+            if ( parseError != null ) {
+                throw new SVNException( SVNErrorMessage.create( SVNErrorCode.EXTERNAL_PROGRAM, "failed to parse the output of {0}: {1}", command, parseError ) );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SVNCancelException();
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private static String readText( InputStream input ) throws IOException {
+        Reader reader = new InputStreamReader( input );
+        try {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[ 1024 ];
+            int count;
+            while ( ( count = reader.read( buffer ) ) >= 0 ) {
+                if ( text.length() < MAXIMUM_ERROR_LENGTH ) {
+                    text.append( buffer, 0, Math.min( count, MAXIMUM_ERROR_LENGTH - text.length() ) );
+                }
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static SVNStatusType toStatusType( String value ) {
+        if ( value == null ) {
+            return SVNStatusType.STATUS_NONE;
+        }
+        SVNStatusType statusType = STATUS_TYPES.get( value );
+        return statusType == null ? SVNStatusType.STATUS_NONE : statusType;
+    }
+
+    private static long toRevision( String value ) {
+        if ( value == null ) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong( value );
+        } catch ( NumberFormatException e ) {
+            return -1L;
+        }
+    }
+
+
+    /** Reads the error output of the process so that the process does not block on a full pipe. */
+    private static final class ErrorReader extends Thread {
+
+        private final InputStream input;
+
+        private volatile String text = "";
+
+
+        private ErrorReader( InputStream input ) {
+            this.input = input;
+            setDaemon( true );
+        }
+
+
+        @Override
+        public void run() {
+            try {
+                text = readText( input );
+            } catch ( IOException e ) {
+                text = e.getMessage();
+            }
+        }
+
+        String getText() {
+            return text;
+        }
+
+    }
+
+    /** Collects the text content of the current element. */
+    private abstract static class TextHandler extends DefaultHandler {
+
+        private final StringBuilder text = new StringBuilder();
+
+
+        @Override
+        public void startElement( String uri, String localName, String qName, Attributes attributes ) throws SAXException {
+            text.setLength( 0 );
+        }
+
+        @Override
+        public void characters( char[] ch, int start, int length ) {
+            text.append( ch, start, length );
+        }
+
+        String getText() {
+            return text.toString().trim();
+        }
+
+    }
+
+    /** Passes the status of every {@code entry} element of the {@code svn status --xml} output to the receiver. */
+    private static final class StatusParser extends TextHandler {
+
+        private final ISvnObjectReceiver<SvnStatus> receiver;
+
+        private File path;
+
+        private SvnStatus status;
+
+        /** Whether the current element is inside the {@code wc-status} element. */
+        private boolean local;
+
+
+        private StatusParser( ISvnObjectReceiver<SvnStatus> receiver ) {
+            this.receiver = receiver;
+        }
+
+
+        @Override
+        public void startElement( String uri, String localName, String qName, Attributes attributes ) throws SAXException {
+            super.startElement( uri, localName, qName, attributes );
+            if ( "entry".equals( qName ) ) {
+                path = new File( attributes.getValue( "path" ) );
+                status = new SvnStatus();
+                status.setPath( path );
+                status.setRevision( -1L );
+                status.setChangedRevision( -1L );
+                status.setRepositoryChangedRevision( -1L );
+                status.setNodeStatus( SVNStatusType.STATUS_NONE );
+                status.setTextStatus( SVNStatusType.STATUS_NONE );
+                status.setPropertiesStatus( SVNStatusType.STATUS_NONE );
+                status.setRepositoryNodeStatus( SVNStatusType.STATUS_NONE );
+                status.setRepositoryTextStatus( SVNStatusType.STATUS_NONE );
+                status.setRepositoryPropertiesStatus( SVNStatusType.STATUS_NONE );
+            } else if ( status != null && "wc-status".equals( qName ) ) {
+                local = true;
+                SVNStatusType nodeStatus = toStatusType( attributes.getValue( "item" ) );
+                status.setNodeStatus( nodeStatus );
+                status.setTextStatus( nodeStatus );
+                status.setPropertiesStatus( toStatusType( attributes.getValue( "props" ) ) );
+                status.setRevision( toRevision( attributes.getValue( "revision" ) ) );
+                status.setCopied( "true".equals( attributes.getValue( "copied" ) ) );
+                status.setSwitched( "true".equals( attributes.getValue( "switched" ) ) );
+                status.setConflicted( "true".equals( attributes.getValue( "tree-conflicted" ) ) );
+                status.setVersioned( !SVNStatusType.STATUS_NONE.equals( nodeStatus )
+                        && !SVNStatusType.STATUS_UNVERSIONED.equals( nodeStatus )
+                        && !SVNStatusType.STATUS_IGNORED.equals( nodeStatus ) );
+            } else if ( status != null && local && "commit".equals( qName ) ) {
+                status.setChangedRevision( toRevision( attributes.getValue( "revision" ) ) );
+            }
+        }
+
+        @Override
+        public void endElement( String uri, String localName, String qName ) throws SAXException {
+            if ( status == null ) {
+                return;
+            }
+            if ( "wc-status".equals( qName ) ) {
+                local = false;
+            } else if ( local && "date".equals( qName ) ) {
+                status.setChangedDate( SVNDate.parseDate( getText() ) );
+            } else if ( local && "author".equals( qName ) ) {
+                status.setChangedAuthor( getText() );
+            } else if ( "entry".equals( qName ) ) {
+                SvnStatus entryStatus = status;
+                status = null;
+                try {
+                    receiver.receive( SvnTarget.fromFile( path ), entryStatus );
+                } catch ( SVNException e ) {
+                    throw new SAXException( e );
+                }
+            }
+        }
+
+    }
+
+    /** Reads the first {@code entry} element of the {@code svn info --xml} output. */
+    private static final class InfoParser extends TextHandler {
+
+        private SvnInfo info;
+
+        /** Whether the first entry element is being read. */
+        private boolean reading;
+
+
+        @Override
+        public void startElement( String uri, String localName, String qName, Attributes attributes ) throws SAXException {
+            super.startElement( uri, localName, qName, attributes );
+            if ( "entry".equals( qName ) && info == null ) {
+                info = new SvnInfo();
+                info.setRevision( toRevision( attributes.getValue( "revision" ) ) );
+                info.setKind( SVNNodeKind.parseKind( attributes.getValue( "kind" ) ) );
+                info.setLastChangedRevision( -1L );
+                reading = true;
+            } else if ( reading && "commit".equals( qName ) ) {
+                info.setLastChangedRevision( toRevision( attributes.getValue( "revision" ) ) );
+            }
+        }
+
+        @Override
+        public void endElement( String uri, String localName, String qName ) throws SAXException {
+            if ( !reading ) {
+                return;
+            }
+            try {
+                if ( "url".equals( qName ) ) {
+                    info.setUrl( SVNURL.parseURIEncoded( getText() ) );
+                } else if ( "root".equals( qName ) ) {
+                    info.setRepositoryRootURL( SVNURL.parseURIEncoded( getText() ) );
+                } else if ( "uuid".equals( qName ) ) {
+                    info.setRepositoryUuid( getText() );
+                } else if ( "date".equals( qName ) ) {
+                    info.setLastChangedDate( SVNDate.parseDate( getText() ) );
+                } else if ( "entry".equals( qName ) ) {
+                    reading = false;
+                }
+            } catch ( SVNException e ) {
+                throw new SAXException( e );
+            }
+        }
+
+    }
+
+}
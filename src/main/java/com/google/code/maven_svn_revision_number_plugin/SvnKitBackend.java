@@ -0,0 +1,80 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnGetInfo;
+import org.tmatesoft.svn.core.wc2.SvnGetStatus;
+import org.tmatesoft.svn.core.wc2.SvnInfo;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/** The backend that runs the svnkit operations with the specified operation factory. */
+final class SvnKitBackend implements StatusBackend {
+
+    private final SvnOperationFactory operationFactory;
+
+
+    /**
+     * Creates a new {@code SvnKitBackend} object.
+     *
+     * @param operationFactory the factory of the svnkit operations
+     */
+    SvnKitBackend( SvnOperationFactory operationFactory ) {
+        if ( operationFactory == null ) {
+            throw new IllegalArgumentException( "{operationFactory} is null" );
+        }
+        this.operationFactory = operationFactory;
+    }
+
+
+    public void status( File path, SVNDepth depth, boolean reportAll, boolean reportIgnored, boolean reportExternals, ISvnObjectReceiver<SvnStatus> receiver ) throws SVNException {
+        SvnGetStatus statusOperation = operationFactory.createGetStatus();
+        statusOperation.setSingleTarget( SvnTarget.fromFile( path ) );
+        statusOperation.setDepth( depth );
+        statusOperation.setRevision( SVNRevision.WORKING );
+        statusOperation.setReportAll( reportAll );
+        statusOperation.setReportIgnored( reportIgnored );
+        statusOperation.setReportExternals( reportExternals );
+        statusOperation.setRemote( false );
+        statusOperation.setReceiver( receiver );
+        statusOperation.run();
+    }
+
+    public SvnInfo info( File path ) throws SVNException {
+        SvnGetInfo infoOperation = operationFactory.createGetInfo();
+        infoOperation.setSingleTarget( SvnTarget.fromFile( path ) );
+        return infoOperation.run();
+    }
+
+}
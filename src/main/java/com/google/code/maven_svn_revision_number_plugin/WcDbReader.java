@@ -0,0 +1,255 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.tmatesoft.sqljet.core.SqlJetException;
+import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
+import org.tmatesoft.sqljet.core.table.ISqlJetCursor;
+import org.tmatesoft.sqljet.core.table.ISqlJetTable;
+import org.tmatesoft.sqljet.core.table.SqlJetDb;
+import org.tmatesoft.svn.core.SVNDepth;
+
+/**
+ * Reads the revision metadata of the 1.7+ working copy directly from the {@code .svn/wc.db} database.
+ * <p/>
+ * Only the {@code BASE} layer of the {@code NODES} table is taken into account, which matches the revisions reported by
+ * the status walk for every node that is present in the working copy.
+ */
+final class WcDbReader {
+
+    private static final String WC_DB = ".svn/wc.db";
+
+    private final File workingCopyRoot;
+
+
+    /**
+     * Creates a new {@code WcDbReader} object for the specified working copy root.
+     *
+     * @param workingCopyRoot the working copy root containing the {@code .svn/wc.db} file
+     */
+    WcDbReader( File workingCopyRoot ) {
+        if ( workingCopyRoot == null ) {
+            throw new IllegalArgumentException( "{workingCopyRoot} is null" );
+        }
+        this.workingCopyRoot = workingCopyRoot.getAbsoluteFile();
+    }
+
+
+    /**
+     * Checks whether the working copy root contains the database file.
+     *
+     * @return {@code true} if the database file exists
+     */
+    boolean exists() {
+        return new File( workingCopyRoot, WC_DB ).isFile();
+    }
+
+    /**
+     * Reads the metadata of the specified path.
+     *
+     * @param path the path inside the working copy
+     * @param depth the depth of nodes below the path to take into account
+     * @param aggregate the aggregate to add the node revisions to
+     *
+     * @return the repository location of the path, or {@code null} if the path has no {@code BASE} node
+     *
+     * @throws SqlJetException if the database can not be read
+     */
+    Location read( File path, SVNDepth depth, StatusAggregate aggregate ) throws SqlJetException {
+        String relativePath = getRelativePath( path.getAbsoluteFile() );
+        if ( relativePath == null ) {
+            throw new IllegalArgumentException( path + " is not inside " + workingCopyRoot );
+        }
+        List<File> externals = new ArrayList<File>();
+        Location location;
+        SqlJetDb db = SqlJetDb.open( new File( workingCopyRoot, WC_DB ), false );
+        try {
+            db.beginTransaction( SqlJetTransactionMode.READ_ONLY );
+            try {
+                long wcId = readWcId( db );
+                location = readLocation( db, wcId, relativePath );
+                readNodes( db, wcId, relativePath, depth, aggregate );
+                if ( SVNDepth.INFINITY.equals( depth ) ) {
+                    readExternals( db, wcId, relativePath, externals );
+                }
+            } finally {
+                db.commit();
+            }
+        } finally {
+            db.close();
+        }
+        for ( File external : externals ) {
+            WcDbReader externalReader = new WcDbReader( external );
+            if ( externalReader.exists() ) {
+                externalReader.read( external, SVNDepth.INFINITY, aggregate );
+            }
+        }
+        return location;
+    }
+
+
+    private String getRelativePath( File path ) {
+        StringBuilder relativePath = new StringBuilder();
+        for ( File current = path; current != null; current = current.getParentFile() ) {
+            if ( current.equals( workingCopyRoot ) ) {
+                return relativePath.toString();
+            }
+            if ( relativePath.length() > 0 ) {
+                relativePath.insert( 0, '/' );
+            }
+            relativePath.insert( 0, current.getName() );
+        }
+        return null;
+    }
+
+    private static long readWcId( SqlJetDb db ) throws SqlJetException {
+        ISqlJetCursor cursor = db.getTable( "WCROOT" ).open();
+        try {
+            return cursor.eof() ? 1L : cursor.getInteger( "id" );
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static Location readLocation( SqlJetDb db, long wcId, String relativePath ) throws SqlJetException {
+        long reposId;
+        String reposPath;
+        ISqlJetTable nodes = db.getTable( "NODES" );
+        ISqlJetCursor cursor = nodes.lookup( nodes.getPrimaryKeyIndexName(), wcId, relativePath, 0L );
+        try {
+            if ( cursor.eof() || cursor.isNull( "repos_id" ) ) {
+                return null;
+            }
+            reposId = cursor.getInteger( "repos_id" );
+            reposPath = cursor.getString( "repos_path" );
+        } finally {
+            cursor.close();
+        }
+        ISqlJetTable repository = db.getTable( "REPOSITORY" );
+        cursor = repository.lookup( repository.getPrimaryKeyIndexName(), reposId );
+        try {
+            return cursor.eof() ? null : new Location( cursor.getString( "root" ), reposPath );
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void readNodes( SqlJetDb db, long wcId, String relativePath, SVNDepth depth, StatusAggregate aggregate ) throws SqlJetException {
+        ISqlJetTable nodes = db.getTable( "NODES" );
+        ISqlJetCursor cursor;
+        if ( relativePath.length() == 0 && !SVNDepth.EMPTY.equals( depth ) ) {
+            cursor = nodes.scope( nodes.getPrimaryKeyIndexName(), new Object[] { wcId }, new Object[] { wcId } );
+        } else if ( SVNDepth.EMPTY.equals( depth ) ) {
+            cursor = nodes.scope( nodes.getPrimaryKeyIndexName(), new Object[] { wcId, relativePath }, new Object[] { wcId, relativePath } );
+        } else {
+            cursor = nodes.scope( nodes.getPrimaryKeyIndexName(), new Object[] { wcId, relativePath }, new Object[] { wcId, relativePath + '0' } );
+        }
+        try {
+            String descendantPrefix = relativePath.length() == 0 ? "" : relativePath + '/';
+            for ( ; !cursor.eof(); cursor.next() ) {
+                if ( cursor.getInteger( "op_depth" ) != 0L ) {
+                    continue;
+                }
+                String presence = cursor.getString( "presence" );
+                if ( !"normal".equals( presence ) && !"incomplete".equals( presence ) ) {
+                    continue;
+                }
+                String nodePath = cursor.getString( "local_relpath" );
+                if ( !nodePath.equals( relativePath ) ) {
+                    if ( !nodePath.startsWith( descendantPrefix ) ) {
+                        continue;
+                    }
+                    if ( !SVNDepth.INFINITY.equals( depth ) ) {
+                        if ( !relativePath.equals( cursor.getString( "parent_relpath" ) ) ) {
+                            continue;
+                        }
+                        if ( SVNDepth.FILES.equals( depth ) && "dir".equals( cursor.getString( "kind" ) ) ) {
+                            continue;
+                        }
+                    }
+                }
+                aggregate.addRevisions(
+                        cursor.isNull( "revision" ) ? -1L : cursor.getInteger( "revision" ),
+                        cursor.isNull( "changed_revision" ) ? -1L : cursor.getInteger( "changed_revision" ),
+                        cursor.isNull( "changed_date" ) ? null : new Date( cursor.getInteger( "changed_date" ) / 1000L ) );
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void readExternals( SqlJetDb db, long wcId, String relativePath, List<File> externals ) throws SqlJetException {
+        ISqlJetTable externalsTable = db.getSchema().getTable( "EXTERNALS" ) == null ? null : db.getTable( "EXTERNALS" );
+        if ( externalsTable == null ) {
+            return;
+        }
+        ISqlJetCursor cursor = externalsTable.open();
+        try {
+            String descendantPrefix = relativePath.length() == 0 ? "" : relativePath + '/';
+            for ( ; !cursor.eof(); cursor.next() ) {
+                String externalPath = cursor.getString( "local_relpath" );
+                if ( cursor.getInteger( "wc_id" ) == wcId && "dir".equals( cursor.getString( "kind" ) )
+                        && ( externalPath.equals( relativePath ) || externalPath.startsWith( descendantPrefix ) ) ) {
+                    externals.add( new File( workingCopyRoot, externalPath ) );
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+
+    /** The repository location of a working copy node. */
+    static final class Location {
+
+        private final String repositoryRoot;
+
+        private final String repositoryPath;
+
+
+        Location( String repositoryRoot, String repositoryPath ) {
+            this.repositoryRoot = repositoryRoot;
+            this.repositoryPath = repositoryPath;
+        }
+
+
+        String getRepositoryRoot() {
+            return repositoryRoot;
+        }
+
+        String getRepositoryPath() {
+            return repositoryPath;
+        }
+
+    }
+
+}
@@ -0,0 +1,201 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnGetStatus;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/**
+ * The result of a single status walk over the whole working copy.
+ * <p/>
+ * The walk keeps one record per directory with the aggregated status of the directory subtree, so the status of any
+ * versioned directory below the working copy root can be answered without walking the working copy again.
+ */
+final class WorkingCopyScan implements ISvnObjectReceiver<SvnStatus> {
+
+    private final File root;
+
+    private final Map<File, Directory> directories = new HashMap<File, Directory>();
+
+
+    /**
+     * Creates a new {@code WorkingCopyScan} object for the specified working copy root.
+     *
+     * @param root the working copy root
+     */
+    WorkingCopyScan( File root ) {
+        if ( root == null ) {
+            throw new IllegalArgumentException( "{root} is null" );
+        }
+        this.root = root.getAbsoluteFile();
+    }
+
+
+    /**
+     * Walks the working copy and aggregates the status of every directory subtree.
+     *
+     * @param operationFactory the operation factory to use
+     *
+     * @throws SVNException if the status walk fails
+     */
+    void run( SvnOperationFactory operationFactory ) throws SVNException {
+        SvnGetStatus statusOperation = operationFactory.createGetStatus();
+        statusOperation.setSingleTarget( SvnTarget.fromFile( root ) );
+        statusOperation.setDepth( SVNDepth.INFINITY );
+        statusOperation.setRevision( SVNRevision.WORKING );
+        statusOperation.setReportAll( true );
+        statusOperation.setReportIgnored( true );
+        statusOperation.setRemote( false );
+        statusOperation.setReceiver( this );
+        statusOperation.run();
+
+        aggregateSubtrees();
+    }
+
+    public void receive( SvnTarget target, SvnStatus status ) throws SVNException {
+        File path = target.getFile().getAbsoluteFile();
+        if ( SVNNodeKind.DIR.equals( status.getKind() ) ) {
+            Directory directory = getDirectory( path );
+            if ( directory.repositoryRoot == null ) {
+                directory.repositoryRoot = status.getRepositoryRootUrl() == null ? "" : status.getRepositoryRootUrl().toString();
+                directory.repositoryPath = status.getRepositoryRelativePath();
+            }
+            directory.eligible &= isEligible( status );
+            directory.subtree.add( status );
+        } else if ( !path.equals( root ) ) {
+            getDirectory( path.getParentFile() ).subtree.add( status );
+        }
+    }
+
+    /**
+     * Returns the aggregated status of the specified directory subtree.
+     *
+     * @param path the directory path
+     *
+     * @return the subtree record, or {@code null} if the directory is not a versioned directory seen by the walk
+     */
+    Directory getSubtree( File path ) {
+        Directory directory = directories.get( path.getAbsoluteFile() );
+        return directory != null && directory.repositoryRoot != null && directory.eligible ? directory : null;
+    }
+
+
+    private Directory getDirectory( File path ) {
+        Directory directory = directories.get( path );
+        if ( directory == null ) {
+            directory = new Directory( path );
+            directories.put( path, directory );
+        }
+        return directory;
+    }
+
+    private void aggregateSubtrees() {
+        List<Directory> bottomUp = new ArrayList<Directory>( directories.values() );
+        Collections.sort( bottomUp, new Comparator<Directory>() {
+            public int compare( Directory o1, Directory o2 ) {
+                int l1 = o1.path.getPath().length();
+                int l2 = o2.path.getPath().length();
+                return l1 > l2 ? -1 : l1 < l2 ? 1 : 0;
+            }
+        } );
+        for ( Directory directory : bottomUp ) {
+            if ( directory.path.equals( root ) ) {
+                continue;
+            }
+            for ( File parentPath = directory.path.getParentFile(); parentPath != null; parentPath = parentPath.getParentFile() ) {
+                Directory parent = directories.get( parentPath );
+                if ( parent != null ) {
+                    parent.subtree.add( directory.subtree );
+                    break;
+                }
+                if ( parentPath.equals( root ) ) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean isEligible( SvnStatus status ) {
+        SVNStatusType nodeStatus = status.getNodeStatus();
+        return status.isVersioned()
+                && !SVNStatusType.STATUS_EXTERNAL.equals( nodeStatus )
+                && !SVNStatusType.STATUS_MISSING.equals( nodeStatus )
+                && !SVNStatusType.STATUS_OBSTRUCTED.equals( nodeStatus )
+                && !SVNStatusType.STATUS_INCOMPLETE.equals( nodeStatus );
+    }
+
+
+    /** The aggregated status of a directory subtree. */
+    static final class Directory {
+
+        private final File path;
+
+        private final StatusAggregate subtree = new StatusAggregate();
+
+        private String repositoryRoot;
+
+        private String repositoryPath;
+
+        private boolean eligible = true;
+
+
+        private Directory( File path ) {
+            this.path = path;
+        }
+
+
+        StatusAggregate getSubtree() {
+            return subtree;
+        }
+
+        String getRepositoryRoot() {
+            return repositoryRoot;
+        }
+
+        String getRepositoryPath() {
+            return repositoryPath;
+        }
+
+    }
+
+}
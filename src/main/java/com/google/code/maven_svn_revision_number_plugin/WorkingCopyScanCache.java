@@ -0,0 +1,154 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.execution.MavenSession;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+
+/**
+ * Shares the working copy scans between all the plugin executions of the same build.
+ * <p/>
+ * Every working copy root is scanned at most once per build. If several executions request the same root at the same
+ * time then the first one performs the scan and the others wait for its result. The scans are kept until the build
+ * request is garbage collected, that is, until the end of the build.
+ */
+final class WorkingCopyScanCache {
+
+    private static final Map<Object, WorkingCopyScanCache> BUILD_CACHES = new WeakHashMap<Object, WorkingCopyScanCache>();
+
+
+    /**
+     * Returns the object that identifies the build of the specified session.
+     * <p/>
+     * Maven 3 clones the session for every module of a parallel build, but all the clones share the execution request,
+     * which lives as long as the build itself. Maven 2 has neither the request nor the clones, so the session itself is
+     * used there.
+     *
+     * @param session the build session
+     *
+     * @return the build key to be used as a weak key of the build-wide state
+     */
+    static Object getBuildKey( MavenSession session ) {
+        try {
+            Object request = session.getClass().getMethod( "getRequest" ).invoke( session );
+            if ( request != null ) {
+                return request;
+            }
+        } catch ( Exception e ) {
+            // Maven 2 session
+        }
+        return session;
+    }
+
+    /**
+     * Returns the cache associated with the build of the specified session.
+     *
+     * @param session the build session
+     *
+     * @return the build cache
+     */
+    static WorkingCopyScanCache getInstance( MavenSession session ) {
+        Object buildKey = getBuildKey( session );
+        synchronized ( BUILD_CACHES ) {
+            WorkingCopyScanCache cache = BUILD_CACHES.get( buildKey );
+            if ( cache == null ) {
+                cache = new WorkingCopyScanCache();
+                BUILD_CACHES.put( buildKey, cache );
+            }
+            return cache;
+        }
+    }
+
+
+    private final ConcurrentMap<File, FutureTask<WorkingCopyScan>> scans = new ConcurrentHashMap<File, FutureTask<WorkingCopyScan>>();
+
+
+    private WorkingCopyScanCache() {
+    }
+
+
+    /**
+     * Returns the scan of the specified working copy root, scanning the working copy if it was not scanned yet.
+     *
+     * @param root the working copy root
+     * @param operationFactory the operation factory to use if the scan is performed by the current thread
+     * @param scanCounter the counter that is incremented if the scan is performed by the current thread
+     *
+     * @return the working copy scan
+     *
+     * @throws SVNException if the scan failed
+     */
+    WorkingCopyScan getScan( File root, final SvnOperationFactory operationFactory, final AtomicLong scanCounter ) throws SVNException {
+        final File key = root.getAbsoluteFile();
+        FutureTask<WorkingCopyScan> scan = scans.get( key );
+        if ( scan == null ) {
+            FutureTask<WorkingCopyScan> newScan = new FutureTask<WorkingCopyScan>( new Callable<WorkingCopyScan>() {
+                public WorkingCopyScan call() throws SVNException {
+                    WorkingCopyScan workingCopyScan = new WorkingCopyScan( key );
+                    scanCounter.incrementAndGet();
+                    workingCopyScan.run( operationFactory );
+                    return workingCopyScan;
+                }
+            } );
+            scan = scans.putIfAbsent( key, newScan );
+            if ( scan == null ) {
+                scan = newScan;
+                scan.run();
+            }
+        }
+        try {
+            return scan.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SVNCancelException();
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof SVNException ) {
+                throw (SVNException) cause;
+            } else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            } else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException( cause );
+            }
+        }
+    }
+
+}
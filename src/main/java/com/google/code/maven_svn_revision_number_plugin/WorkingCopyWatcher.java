@@ -0,0 +1,442 @@
+/*-
+ * Copyright (c) 2009-2012, Oleg Estekhin
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.code.maven_svn_revision_number_plugin;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the entry statuses of the long-lived build JVMs up to date between the plugin executions.
+ * <p/>
+ * Each watched entry keeps the last calculated status record in memory. A background thread collects the files and
+ * directories that are created, modified or deleted in the versioned directories of the entry, and an execution
+ * inspects again only the items in which something changed. If all the directories of the record were watched while
+ * it was calculated, the working copy metadata and the item names of the entry directory are the only things an
+ * execution checks, so its cost does not depend on the size of the working copy. Otherwise, and after lost
+ * notifications, the recorded layout is checked the same way as for the result cache. The whole record is discarded
+ * after an update or any other change of the metadata. The background thread uses the
+ * {@code java.nio.file.WatchService} through reflection, so the watch service is not required: on the JVMs that do
+ * not have it the layout is checked by every execution. A watch that is not used for some time is discarded.
+ */
+final class WorkingCopyWatcher {
+
+    /** The time after which an unused watch is discarded. */
+    private static final long IDLE_TIMEOUT = 10L * 60L * 1000L;
+
+    private static final Map<String, Watch> WATCHES = new HashMap<String, Watch>();
+
+
+    private WorkingCopyWatcher() {
+    }
+
+
+    /**
+     * Returns the watch of the specified entry, starting a new watch if the entry is not watched yet.
+     *
+     * @param entry the entry
+     *
+     * @return the entry watch
+     */
+    static Watch getWatch( Entry entry ) {
+        String key = EntryResultCache.getConfig( entry );
+        long now = System.currentTimeMillis();
+        synchronized ( WATCHES ) {
+            for ( Iterator<Watch> i = WATCHES.values().iterator(); i.hasNext(); ) {
+                Watch watch = i.next();
+                if ( now - watch.lastAccess > IDLE_TIMEOUT ) {
+                    i.remove();
+                    watch.close();
+                }
+            }
+            Watch watch = WATCHES.get( key );
+            if ( watch == null ) {
+                watch = new Watch( entry );
+                WATCHES.put( key, watch );
+            }
+            watch.lastAccess = now;
+            return watch;
+        }
+    }
+
+    private static void discard( Watch watch ) {
+        synchronized ( WATCHES ) {
+            if ( System.currentTimeMillis() - watch.lastAccess > IDLE_TIMEOUT ) {
+                WATCHES.values().remove( watch );
+                watch.close();
+            }
+        }
+    }
+
+
+    /** The in-memory state of a single watched entry. */
+    static final class Watch {
+
+        private final Entry entry;
+
+        private volatile EntryResultCache.Record record;
+
+        private volatile long lastAccess;
+
+        private ChangeNotifier notifier;
+
+        private boolean closed;
+
+        /** Whether the notifier was running when the fingerprint for the next record was computed. */
+        private boolean fingerprintWatched;
+
+        /** Whether the notifier watched every directory of the record since the record was calculated. */
+        private boolean recordWatched;
+
+        private volatile boolean layoutChecked;
+
+
+        private Watch( Entry entry ) {
+            this.entry = entry;
+        }
+
+
+        /**
+         * Returns the last calculated status of the entry.
+         *
+         * @return the status record, or {@code null} if the status was not calculated yet
+         */
+        EntryResultCache.Record getRecord() {
+            return record;
+        }
+
+        /**
+         * Computes the current fingerprint of the entry. If the record was watched completely and no notification was
+         * lost, only the working copy metadata and the item names of the entry directory are checked, otherwise the
+         * recorded layout is checked too. The items in which something changed since the previous call are marked as
+         * changed.
+         *
+         * @return the fingerprint, or {@code null} if the entry is not inside a working copy
+         */
+        EntryResultCache.Fingerprint getFingerprint() {
+            ChangeNotifier currentNotifier;
+            boolean watched;
+            synchronized ( this ) {
+                currentNotifier = notifier;
+                if ( notifier != null && notifier.isStopped() ) {
+                    // the changes collected so far are still used, later only the layout is checked
+                    notifier = null;
+                    closed = true;
+                }
+                watched = recordWatched && notifier != null;
+                fingerprintWatched = notifier != null;
+            }
+            Set<String> changedNames = currentNotifier != null ? currentNotifier.takeChangedNames() : null;
+            EntryResultCache.Record currentRecord = record;
+            EntryResultCache.Fingerprint fingerprint = null;
+            if ( watched && currentRecord != null && !changedNames.contains( null ) ) {
+                fingerprint = EntryResultCache.fingerprintUnchanged( entry, currentRecord );
+            }
+            layoutChecked = fingerprint == null;
+            if ( fingerprint == null ) {
+                fingerprint = EntryResultCache.fingerprint( entry, currentRecord );
+                if ( fingerprint != null && currentRecord != null && changedNames != null && changedNames.isEmpty() && currentRecord.isUnchanged( fingerprint ) ) {
+                    // the layout confirmed the record while all its directories were already watched
+                    synchronized ( this ) {
+                        recordWatched = notifier != null;
+                    }
+                }
+            }
+            if ( fingerprint != null && changedNames != null ) {
+                for ( String name : changedNames.contains( null ) ? fingerprint.getChildren() : changedNames ) {
+                    fingerprint.markChanged( name );
+                }
+            }
+            return fingerprint;
+        }
+
+        /**
+         * Checks whether the last {@link #getFingerprint()} call checked the recorded layout.
+         *
+         * @return {@code false} if only the metadata and the item names of the entry directory were checked
+         */
+        boolean isLayoutChecked() {
+            return layoutChecked;
+        }
+
+        /**
+         * Replaces the status of the entry and starts to watch the versioned directories of the new layout.
+         *
+         * @param record the new status record
+         */
+        void update( EntryResultCache.Record record ) {
+            this.record = record;
+            synchronized ( this ) {
+                recordWatched = false;
+                if ( closed ) {
+                    return;
+                }
+                if ( notifier == null ) {
+                    notifier = ChangeNotifier.start( this );
+                    if ( notifier == null ) {
+                        return;
+                    }
+                }
+                int newDirectories = notifier.watch( record.getDirectories( entry.getPath() ) );
+                if ( newDirectories < 0 ) {
+                    notifier.close();
+                    notifier = null;
+                    closed = true;
+                    return;
+                }
+                // the changes in the newly watched directories made during the calculation were not seen
+                recordWatched = fingerprintWatched && newDirectories == 0;
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            if ( notifier != null ) {
+                notifier.close();
+                notifier = null;
+            }
+        }
+
+    }
+
+    /**
+     * Collects the names of the items immediately below the entry directory in which a file or a directory was created,
+     * modified or deleted.
+     * The {@code java.nio.file} classes are used through reflection because the plugin also runs on the JVMs that do
+     * not have them.
+     */
+    private static final class ChangeNotifier implements Runnable {
+
+        private static Object fileSystem;
+
+        private static Method newWatchService;
+
+        private static Method toPath;
+
+        private static Method register;
+
+        private static Object watchedKinds;
+
+        private static Object overflowKind;
+
+        private static Method poll;
+
+        private static Method pollEvents;
+
+        private static Method reset;
+
+        private static Method kind;
+
+        private static Method context;
+
+        private static Method close;
+
+        static {
+            try {
+                Class<?> watchServiceClass = Class.forName( "java.nio.file.WatchService" );
+                Class<?> watchKeyClass = Class.forName( "java.nio.file.WatchKey" );
+                Class<?> watchEventClass = Class.forName( "java.nio.file.WatchEvent" );
+                Class<?> kindClass = Class.forName( "java.nio.file.WatchEvent$Kind" );
+                Class<?> kindsClass = Class.forName( "java.nio.file.StandardWatchEventKinds" );
+                fileSystem = Class.forName( "java.nio.file.FileSystems" ).getMethod( "getDefault" ).invoke( null );
+                newWatchService = Class.forName( "java.nio.file.FileSystem" ).getMethod( "newWatchService" );
+                toPath = File.class.getMethod( "toPath" );
+                register = Class.forName( "java.nio.file.Path" ).getMethod( "register", watchServiceClass, Array.newInstance( kindClass, 0 ).getClass() );
+                watchedKinds = Array.newInstance( kindClass, 3 );
+                Array.set( watchedKinds, 0, kindsClass.getField( "ENTRY_CREATE" ).get( null ) );
+                Array.set( watchedKinds, 1, kindsClass.getField( "ENTRY_MODIFY" ).get( null ) );
+                Array.set( watchedKinds, 2, kindsClass.getField( "ENTRY_DELETE" ).get( null ) );
+                overflowKind = kindsClass.getField( "OVERFLOW" ).get( null );
+                poll = watchServiceClass.getMethod( "poll", long.class, TimeUnit.class );
+                pollEvents = watchKeyClass.getMethod( "pollEvents" );
+                reset = watchKeyClass.getMethod( "reset" );
+                kind = watchEventClass.getMethod( "kind" );
+                context = watchEventClass.getMethod( "context" );
+                close = watchServiceClass.getMethod( "close" );
+            } catch ( Exception e ) {
+                fileSystem = null;
+            }
+        }
+
+        private final Watch watch;
+
+        private final String childPrefix;
+
+        private final Object watchService;
+
+        private final Map<Object, File> directoriesByKey = new ConcurrentHashMap<Object, File>();
+
+        private final Set<File> directories = new HashSet<File>();
+
+        /** The names of the changed items, the {@code null} name means that some notifications were lost. */
+        private Set<String> changedNames = new HashSet<String>();
+
+        private volatile boolean stopped;
+
+
+        private ChangeNotifier( Watch watch, Object watchService ) {
+            this.watch = watch;
+            this.watchService = watchService;
+            childPrefix = watch.entry.getPath().getAbsolutePath() + File.separator;
+        }
+
+
+        /**
+         * Starts the background thread that collects the changes of the watched entry.
+         *
+         * @param watch the watch
+         *
+         * @return the started notifier, or {@code null} if the file system notifications are not available
+         */
+        static ChangeNotifier start( Watch watch ) {
+            if ( fileSystem == null ) {
+                return null;
+            }
+            Object watchService;
+            try {
+                watchService = newWatchService.invoke( fileSystem );
+            } catch ( Exception e ) {
+                return null;
+            }
+            ChangeNotifier notifier = new ChangeNotifier( watch, watchService );
+            Thread thread = new Thread( notifier, "svn-revision-number-watcher" );
+            thread.setDaemon( true );
+            thread.start();
+            return notifier;
+        }
+
+        /**
+         * Starts to watch the specified directories in addition to the already watched ones.
+         *
+         * @param newDirectories the directories
+         *
+         * @return the number of the directories that were not watched before, or {@code -1} if some directory can not
+         *         be watched
+         */
+        synchronized int watch( Collection<File> newDirectories ) {
+            int added = 0;
+            for ( File directory : newDirectories ) {
+                if ( directories.contains( directory ) || !directory.isDirectory() ) {
+                    continue;
+                }
+                try {
+                    Object key = register.invoke( toPath.invoke( directory ), watchService, watchedKinds );
+                    directoriesByKey.put( key, directory );
+                    directories.add( directory );
+                    added++;
+                } catch ( Exception e ) {
+                    return -1;
+                }
+            }
+            return added;
+        }
+
+        /**
+         * Returns the names of the items that changed since the previous call.
+         *
+         * @return the item names, the {@code null} name means that any item may have changed
+         */
+        synchronized Set<String> takeChangedNames() {
+            Set<String> names = changedNames;
+            changedNames = new HashSet<String>();
+            return names;
+        }
+
+        private synchronized void addChange( File file ) {
+            String path = file.getAbsolutePath();
+            if ( path.startsWith( childPrefix ) ) {
+                int nameEnd = path.indexOf( File.separatorChar, childPrefix.length() );
+                changedNames.add( nameEnd < 0 ? path.substring( childPrefix.length() ) : path.substring( childPrefix.length(), nameEnd ) );
+            }
+        }
+
+        private synchronized void addOverflow() {
+            changedNames.add( null );
+        }
+
+        public void run() {
+            try {
+                while ( true ) {
+                    Object key = poll.invoke( watchService, IDLE_TIMEOUT, TimeUnit.MILLISECONDS );
+                    if ( key == null ) {
+                        discard( watch );
+                        continue;
+                    }
+                    File directory = directoriesByKey.get( key );
+                    for ( Object event : (List<?>) pollEvents.invoke( key ) ) {
+                        if ( overflowKind.equals( kind.invoke( event ) ) ) {
+                            addOverflow();
+                        } else if ( directory != null ) {
+                            addChange( new File( directory, String.valueOf( context.invoke( event ) ) ) );
+                        }
+                    }
+                    if ( !Boolean.TRUE.equals( reset.invoke( key ) ) ) {
+                        directoriesByKey.remove( key );
+                        synchronized ( this ) {
+                            directories.remove( directory );
+                        }
+                    }
+                }
+            } catch ( InvocationTargetException e ) {
+                // the watch service was closed or the thread was interrupted
+            } catch ( IllegalAccessException e ) {
+                addOverflow();
+            } finally {
+                stopped = true;
+            }
+        }
+
+        /**
+         * Checks whether the background thread no longer collects the changes.
+         *
+         * @return {@code true} if the notifier stopped
+         */
+        boolean isStopped() {
+            return stopped;
+        }
+
+        void close() {
+            try {
+                close.invoke( watchService );
+            } catch ( Exception e ) {
+                // nothing to do
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory
+import org.tmatesoft.svn.core.internal.wc2.SvnWcGeneration
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory
+import org.tmatesoft.svn.core.wc2.SvnTarget
+
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+def repositoryDir = new File( tempDir, "repo" )
+def contentDir = new File( tempDir, "content" )
+def workingCopyDir = new File( tempDir, "wc" )
+
+// the size and the shape of the generated working copy
+def fileCount = Integer.getInteger( "perf.files", 50000 )
+def depth = Integer.getInteger( "perf.depth", 8 )
+def mixedInterval = Integer.getInteger( "perf.mixedInterval", 10 )
+def modifiedInterval = Integer.getInteger( "perf.modifiedInterval", 100 )
+def unversionedInterval = Integer.getInteger( "perf.unversionedInterval", 500 )
+
+println "cleaning temp directory"
+tempDir.deleteDir()
+tempDir.mkdirs()
+
+println "creating repository"
+FSRepositoryFactory.setup()
+def repositoryUrl = SVNRepositoryFactory.createLocalRepository( repositoryDir, null, false, false, false, false, false, false, true )
+
+def directories = []
+def collectDirectories
+collectDirectories = { String path, int level ->
+    directories << path
+    if ( level > 0 ) {
+        collectDirectories( path + "dir0/", level - 1 )
+        collectDirectories( path + "dir1/", level - 1 )
+    }
+}
+collectDirectories( "", depth )
+
+println "creating content with ${fileCount} files in ${directories.size()} directories"
+def files = []
+for ( int i = 0; i < fileCount; i++ ) {
+    def file = directories[ i % directories.size() ] + "file" + i + ".txt"
+    def target = new File( contentDir, file )
+    target.parentFile.mkdirs()
+    target.text = "content " + i + "\n"
+    files << file
+}
+for ( String dir : directories ) {
+    new File( contentDir, dir ).mkdirs()
+}
+
+println "creating working copy"
+def operationFactory = new SvnOperationFactory()
+operationFactory.setPrimaryWcGeneration( SvnWcGeneration.V16 )
+
+println "  importing"
+def genericImport = operationFactory.createImport()
+genericImport.setSource( contentDir )
+genericImport.setSingleTarget( SvnTarget.fromURL( repositoryUrl.appendPath( "trunk", false ) ) )
+genericImport.setCommitMessage( "generated content" )
+genericImport.run()
+
+println "  checking out"
+def genericCheckout = operationFactory.createCheckout()
+genericCheckout.setSource( SvnTarget.fromURL( repositoryUrl.appendPath( "trunk", false ) ) )
+genericCheckout.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+genericCheckout.run()
+
+contentDir.deleteDir()
+
+println "  committing every ${mixedInterval}th file"
+for ( int i = 0; i < fileCount; i += mixedInterval ) {
+    new File( workingCopyDir, files[ i ] ) << "committed\n"
+}
+def mixedCommit = operationFactory.createCommit()
+mixedCommit.setSingleTarget( SvnTarget.fromFile( workingCopyDir ) )
+mixedCommit.setCommitMessage( "mixed revisions" )
+mixedCommit.run()
+
+println "  modifying every ${modifiedInterval}th file"
+for ( int i = modifiedInterval.intdiv( 2 ); i < fileCount; i += modifiedInterval ) {
+    new File( workingCopyDir, files[ i ] ) << "modified\n"
+}
+int unversionedCount = 0
+for ( int i = 0; i < fileCount; i += unversionedInterval ) {
+    new File( workingCopyDir, directories[ i % directories.size() ] + "unversioned" + i + ".txt" ).text = "unversioned\n"
+    unversionedCount++
+}
+
+operationFactory.dispose()
+
+new File( basedir, "nodes.txt" ).text = String.valueOf( directories.size() + fileCount + unversionedCount )
+
+return true
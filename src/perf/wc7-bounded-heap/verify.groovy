@@ -0,0 +1,40 @@
+def tempDir = new File( basedir, "svn" )
+println "temp directory is " + tempDir
+
+// the budgets of a single entry inspection, the heap budget is the whole JVM heap of the build that runs with -Xmx32m,
+// the build fails with OutOfMemoryError if the walk keeps any state per node, and the reported peak includes the
+// garbage, so it reaches the limit anyway
+def maxTime = Long.getLong( "perf.maxTime", 120000L )
+def maxHeap = Long.getLong( "perf.maxBoundedHeap", 32L )
+
+println "reading properties"
+def propertiesFile = new File( basedir, "target/classes/properties.txt" )
+def properties = new Properties();
+propertiesFile.withReader( "UTF-8" ) {
+    properties.load( it )
+}
+
+println "checking properties"
+
+def nodes = new File( basedir, "nodes.txt" ).text
+for ( prefix in [ "walk", "metadata" ] ) {
+    assert properties."${prefix}.repository" =~ /\/repo$/
+    assert properties."${prefix}.path" == "trunk"
+    assert properties."${prefix}.revision" == "2"
+    assert properties."${prefix}.mixedRevisions" == "true"
+    assert properties."${prefix}.committedRevision" == "2"
+    assert properties."${prefix}.status" == "M?"
+}
+assert properties."walk.nodes" == nodes
+
+println "checking budgets"
+
+for ( prefix in [ "walk", "metadata" ] ) {
+    def time = Long.parseLong( properties."${prefix}.totalTime" )
+    def heap = Long.parseLong( properties."${prefix}.peakHeap" ).intdiv( 1024 * 1024 )
+    println "${prefix}: ${time} ms of ${maxTime} ms, ${heap} MB of ${maxHeap} MB peak heap for ${nodes} nodes"
+    assert time <= maxTime
+    assert heap <= maxHeap
+}
+
+return true